@@ -0,0 +1,77 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.benchmark;
+
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+final class BenchmarkSupport {
+
+  private BenchmarkSupport() { }
+
+  /**
+   * Returns the test data directory, the benchmarks have to be run from the project directory.
+   */
+  static File getTestDataDir() {
+    File dir = new File("testData");
+    if (!new File(dir, "classes").isDirectory()) {
+      throw new IllegalStateException("testData not found in " + new File("").getAbsolutePath());
+    }
+    return dir;
+  }
+
+  static File getClassFile(String className) {
+    return new File(getTestDataDir(), "classes/" + className + ".class");
+  }
+
+  /**
+   * Creates a decompiler for the given class and its nested classes, or for an archive or directory.
+   */
+  static Fernflower createDecompiler(FileStructContext context, File source) throws IOException {
+    Map<String, Object> options = new HashMap<String, Object>();
+    options.put(IFernflowerPreferences.LOG_LEVEL, "warn");
+    options.put(IFernflowerPreferences.DECOMPILE_GENERIC_SIGNATURES, "1");
+    options.put(IFernflowerPreferences.REMOVE_SYNTHETIC, "1");
+    options.put(IFernflowerPreferences.REMOVE_BRIDGE, "1");
+
+    Fernflower decompiler = new Fernflower(context, options, new PrintStreamLogger(System.err));
+
+    if (source.isFile() && source.getName().endsWith(".class")) {
+      String prefix = source.getName().substring(0, source.getName().length() - ".class".length());
+      File[] files = source.getParentFile().listFiles();
+      if (files != null) {
+        for (File file : files) {
+          if (file.getName().equals(source.getName()) || file.getName().startsWith(prefix + "$")) {
+            context.scan(file.toPath(), true);
+          }
+        }
+      }
+    }
+    else {
+      context.scan(source.toPath(), true);
+    }
+
+    decompiler.decompileContext();
+    return decompiler;
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.benchmark;
+
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decompiling all classes of an archive, as done by the command line decompilers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkBenchmark {
+
+  @Param("bulk.jar")
+  public String archive;
+
+  private Fernflower decompiler;
+
+  @Setup
+  public void setUp() throws IOException {
+    decompiler = BenchmarkSupport.createDecompiler(new FileStructContext(), new File(BenchmarkSupport.getTestDataDir(), archive));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    decompiler.close();
+  }
+
+  @Benchmark
+  public void decompileClasses(Blackhole blackhole) throws InterruptedException {
+    decompiler.decompileClasses((cl, content) -> blackhole.consume(content));
+  }
+}
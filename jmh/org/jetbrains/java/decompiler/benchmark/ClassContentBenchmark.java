@@ -0,0 +1,57 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.benchmark;
+
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decompiling whole classes including their nested classes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClassContentBenchmark {
+
+  @Param({"pkg/TestClassLoop", "pkg/TestCodeConstructs", "pkg/TestAnonymousClass", "pkg/TestInnerLocalPkg",
+    "pkg/TestClassLambda", "pkg/TestTryCatchFinally"})
+  public String className;
+
+  private Fernflower decompiler;
+  private StructClass cl;
+
+  @Setup
+  public void setUp() throws IOException {
+    FileStructContext context = new FileStructContext();
+    decompiler = BenchmarkSupport.createDecompiler(context, BenchmarkSupport.getClassFile(className));
+    cl = context.getClass(className);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    decompiler.close();
+  }
+
+  @Benchmark
+  public String getClassContent() {
+    return decompiler.getClassContent(cl);
+  }
+}
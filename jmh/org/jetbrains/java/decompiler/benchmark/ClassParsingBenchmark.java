@@ -0,0 +1,69 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.benchmark;
+
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.jetbrains.java.decompiler.struct.consts.ConstantPool;
+import org.jetbrains.java.decompiler.util.DataInputFullStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading class files into the structures the decompiler works on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClassParsingBenchmark {
+
+  @Param({"pkg/TestClassLoop", "pkg/TestCodeConstructs", "pkg/TestAnonymousClass", "pkg/TestEnum"})
+  public String className;
+
+  private FileStructContext context;
+  private Fernflower decompiler;
+  private byte[] bytes;
+
+  @Setup
+  public void setUp() throws IOException {
+    File file = BenchmarkSupport.getClassFile(className);
+    context = new FileStructContext();
+    decompiler = BenchmarkSupport.createDecompiler(context, file);
+    bytes = Files.readAllBytes(file.toPath());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    decompiler.close();
+  }
+
+  @Benchmark
+  public StructClass structClass() throws IOException {
+    return new StructClass(bytes, true, context, null);
+  }
+
+  @Benchmark
+  public ConstantPool constantPool() throws IOException {
+    DataInputFullStream in = new DataInputFullStream(bytes);
+    in.discard(8); // magic and version
+    return new ConstantPool(in);
+  }
+}
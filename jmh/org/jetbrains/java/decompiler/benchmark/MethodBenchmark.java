@@ -0,0 +1,98 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.benchmark;
+
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.collectors.CounterContainer;
+import org.jetbrains.java.decompiler.main.collectors.ImportCollector;
+import org.jetbrains.java.decompiler.main.collectors.VarNamesCollector;
+import org.jetbrains.java.decompiler.main.rels.ClassWrapper;
+import org.jetbrains.java.decompiler.main.rels.MethodProcessorRunnable;
+import org.jetbrains.java.decompiler.modules.decompiler.stats.RootStatement;
+import org.jetbrains.java.decompiler.modules.decompiler.vars.VarProcessor;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.jetbrains.java.decompiler.struct.StructMethod;
+import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the method pipeline ({@link MethodProcessorRunnable#codeToJava}) on single methods, without
+ * writing them out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MethodBenchmark {
+
+  // class, name and descriptor
+  @Param({
+    "pkg/TestClassLoop testFinally ()V",
+    "pkg/TestClassLoop testWhileCombined (Ljava/lang/String;)I",
+    "pkg/TestTryCatchFinally test (Ljava/lang/String;)I",
+    "pkg/TestClassSwitch testCaseOrder (I)V",
+    "pkg/TestLoopMerging test ()F"
+  })
+  public String method;
+
+  private Fernflower decompiler;
+  private ClassNode node;
+  private StructMethod mt;
+
+  @Setup
+  public void setUp() throws IOException {
+    String[] parts = method.split(" ");
+
+    FileStructContext context = new FileStructContext();
+    decompiler = BenchmarkSupport.createDecompiler(context, BenchmarkSupport.getClassFile(parts[0]));
+
+    StructClass cl = context.getClass(parts[0]);
+    node = DecompilerContext.getClassProcessor().getMapRootClasses().get(parts[0]);
+    mt = cl.getMethod(parts[1], parts[2]);
+    if (mt == null) {
+      throw new IllegalArgumentException("Unknown method " + method);
+    }
+
+    DecompilerContext.setProperty(DecompilerContext.CURRENT_CLASS, cl);
+    DecompilerContext.setProperty(DecompilerContext.CURRENT_CLASS_WRAPPER, new ClassWrapper(cl));
+    DecompilerContext.setProperty(DecompilerContext.CURRENT_CLASS_NODE, node);
+    DecompilerContext.setProperty(DecompilerContext.CURRENT_METHOD, mt);
+    DecompilerContext.setProperty(DecompilerContext.CURRENT_METHOD_DESCRIPTOR, MethodDescriptor.parseDescriptor(mt.getDescriptor()));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    decompiler.close();
+  }
+
+  @Benchmark
+  public RootStatement codeToJava() throws IOException {
+    // the same state as set up by ClassWrapper for each method
+    DecompilerContext.setImportCollector(new ImportCollector(node));
+    DecompilerContext.setCounterContainer(new CounterContainer());
+    DecompilerContext.setVarNamesCollector(new VarNamesCollector());
+
+    VarProcessor varProc = new VarProcessor();
+    DecompilerContext.setProperty(DecompilerContext.CURRENT_VAR_PROCESSOR, varProc);
+
+    return MethodProcessorRunnable.codeToJava(mt, varProc);
+  }
+}
@@ -267,10 +267,7 @@ public class Util {
       return true;
     }
 
-    int[] interfaces = cl.getInterfaces();
-    for (int i = 0; i < interfaces.length; i++) {
-      String intfc = cl.getPool().getPrimitiveConstant(interfaces[i]).getString();
-
+    for (String intfc : cl.getInterfaceNames()) {
       if (instanceOf(context, intfc, refclass)) {
         return true;
       }
@@ -18,6 +18,7 @@ package org.jetbrains.java.decompiler.main;
 import org.jetbrains.java.decompiler.code.CodeConstants;
 import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
 import org.jetbrains.java.decompiler.main.collectors.BytecodeMappingTracer;
+import org.jetbrains.java.decompiler.main.collectors.ImportCollector;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.main.rels.ClassWrapper;
@@ -791,13 +792,22 @@ public class ClassWriter {
         buffer.append('{').appendLineSeparator();
         tracer.incrementCurrentSourceLine();
 
+        if (methodWrapper.memo != null && !methodWrapper.memo.registerNames(DecompilerContext.getImportCollector())) {
+          // the memoized body uses names that are imported differently in this class
+          methodWrapper = wrapper.reprocessMethod(mt);
+          DecompilerContext.setProperty(DecompilerContext.CURRENT_METHOD_WRAPPER, methodWrapper);
+        }
+
         RootStatement root = wrapper.getMethodWrapper(mt.getName(), mt.getDescriptor()).root;
 
-        if (root != null && !methodWrapper.decompiledWithErrors) { // check for existence
+        if (methodWrapper.memo != null) {
+          methodWrapper.memo.appendTo(buffer, tracer);
+        }
+        else if (root != null && !methodWrapper.decompiledWithErrors) { // check for existence
           try {
             int startLine = tracer.getCurrentSourceLine();
 
-            TextBuffer code = root.toJava(indent + 1, tracer);
+            TextBuffer code = methodWrapper.memoKey == null ? root.toJava(indent + 1, tracer) : memoizeBody(methodWrapper, indent + 1, tracer);
 
             hideMethod = (clinit || dinit || hideConstructor(wrapper, init, throwsExceptions, paramCount)) && code.length() == 0;
 
@@ -838,6 +848,55 @@ public class ClassWriter {
     return !hideMethod;
   }
 
+  private static TextBuffer memoizeBody(MethodWrapper methodWrapper, int indent, BytecodeMappingTracer tracer) {
+    RootStatement root = methodWrapper.root;
+    ImportCollector imports = DecompilerContext.getImportCollector();
+    ImportCollector bodyImports = imports.fork();
+    int startLine = tracer.getCurrentSourceLine();
+
+    TextBuffer code;
+    DecompilerContext.setImportCollector(bodyImports);
+    try {
+      code = root.toJava(indent, tracer);
+    }
+    finally {
+      DecompilerContext.setImportCollector(imports);
+      imports.merge(bodyImports);
+    }
+
+    BytecodeMappingTracer bodyTracer = new BytecodeMappingTracer(tracer.getCurrentSourceLine());
+    bodyTracer.addTracer(tracer);
+    bodyTracer.addMapping(root.getDummyExit().bytecode);
+    bodyTracer.shiftSourceLines(-startLine);
+
+    StructMethod mt = methodWrapper.methodStruct;
+    MethodDescriptor md = MethodDescriptor.parseDescriptor(mt.getDescriptor());
+    int slots = mt.hasModifier(CodeConstants.ACC_STATIC) ? 0 : 1;
+    for (VarType param : md.params) {
+      slots += param.stackSize;
+    }
+
+    Map<Integer, String> parameterNames = new HashMap<Integer, String>();
+    for (int index = 0; index < slots; index++) {
+      String name = methodWrapper.varproc.getVarName(new VarVersionPair(index, 0));
+      if (name != null) {
+        parameterNames.put(index, name);
+      }
+    }
+
+    MethodMemoCache methodCache = DecompilerContext.getMethodCache();
+    if (methodCache != null) {
+      methodCache.put(methodWrapper.memoKey, new MethodMemoCache.Entry(code.toString(),
+                                                                       tracer.getCurrentSourceLine() - startLine,
+                                                                       bodyTracer.getMapping(),
+                                                                       parameterNames,
+                                                                       methodWrapper.memoProcessingNames,
+                                                                       bodyImports));
+    }
+
+    return code;
+  }
+
   private static void mapLines(TextBuffer code, StructLineNumberTableAttribute table, BytecodeMappingTracer tracer, int startLine) {
     // build line start offsets map
     HashMap<Integer, Set<Integer>> lineStartOffsets = new HashMap<Integer, Set<Integer>>();
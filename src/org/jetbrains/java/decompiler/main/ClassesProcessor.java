@@ -46,9 +46,87 @@ public class ClassesProcessor {
 
   public static final int AVERAGE_CLASS_SIZE = 16 * 1024;
 
-  private final Map<String, ClassNode> mapRootClasses = new HashMap<String, ClassNode>();
+  private final StructContext context;
+  // the nesting trees are only built for the classes that are looked up
+  private final boolean onDemand;
+
+  // lambda nodes are registered while classes are being written, possibly from several threads
+  private final Map<String, ClassNode> mapRootClasses = Collections.synchronizedMap(new HashMap<String, ClassNode>());
+  private final Map<String, ClassNode> mapRootClassesView = new ClassNodesView();
+  // class name -> root classes whose nesting tree contains or encloses the class
+  private final Map<String, Set<String>> mapDependentRoots = new HashMap<String, Set<String>>();
 
   public ClassesProcessor(StructContext context) {
+    this.context = context;
+
+    // renaming of nested classes has to see all of them
+    onDemand = DecompilerContext.getOption(IFernflowerPreferences.ON_DEMAND_CLASSES) &&
+               !DecompilerContext.getOption(IFernflowerPreferences.RENAME_ENTITIES);
+
+    if (!onDemand) {
+      addClasses(context.getClasses().values());
+    }
+  }
+
+  private synchronized void loadClass(String className) {
+    if (mapRootClasses.containsKey(className)) {
+      return;
+    }
+
+    StructClass cl = context.getClass(className);
+    if (cl != null && cl.isOwn()) {
+      addClasses(DecompilerContext.getOption(IFernflowerPreferences.DECOMPILE_INNER)
+                 ? getNestingTree(cl) : Collections.singletonList(cl));
+    }
+  }
+
+  /**
+   * Returns the own classes of the nesting tree containing the class, found through the InnerClasses and
+   * EnclosingMethod attributes of the classes of the tree.
+   */
+  private List<StructClass> getNestingTree(StructClass cl) {
+    Map<String, StructClass> tree = new LinkedHashMap<String, StructClass>();
+    LinkedList<StructClass> stack = new LinkedList<StructClass>();
+
+    tree.put(cl.qualifiedName, cl);
+    stack.add(cl);
+
+    while (!stack.isEmpty()) {
+      StructClass current = stack.removeFirst();
+      List<String> related = new ArrayList<String>();
+
+      StructInnerClassesAttribute inner = (StructInnerClassesAttribute)current.getAttributes().getWithKey("InnerClasses");
+      if (inner != null) {
+        for (InnerClassInfo entry : inner.getEntries()) {
+          if (current.qualifiedName.equals(entry.inner_class)) {
+            related.add(entry.outer_class); // enclosing class
+          }
+          else if (entry.outer_class == null || current.qualifiedName.equals(entry.outer_class)) {
+            related.add(entry.inner_class); // nested class
+          }
+        }
+      }
+
+      StructEnclosingMethodAttribute enclosingMethod =
+        (StructEnclosingMethodAttribute)current.getAttributes().getWithKey("EnclosingMethod");
+      if (enclosingMethod != null) {
+        related.add(enclosingMethod.getClassName());
+      }
+
+      for (String name : related) {
+        if (name != null && !tree.containsKey(name) && context.isOwnClass(name)) {
+          StructClass relatedClass = context.getClass(name);
+          tree.put(name, relatedClass);
+          stack.add(relatedClass);
+        }
+      }
+    }
+
+    return new ArrayList<StructClass>(tree.values());
+  }
+
+  private void addClasses(Collection<StructClass> classes) {
+    Map<String, ClassNode> nodes = new HashMap<String, ClassNode>();
 
     Map<String, Object[]> mapInnerClasses = new HashMap<String, Object[]>();
     Map<String, Set<String>> mapNestedClassReferences = new HashMap<String, Set<String>>();
@@ -58,8 +136,8 @@ public class ClassesProcessor {
     boolean bDecompileInner = DecompilerContext.getOption(IFernflowerPreferences.DECOMPILE_INNER);
 
     // create class nodes
-    for (StructClass cl : context.getClasses().values()) {
-      if (cl.isOwn() && !mapRootClasses.containsKey(cl.qualifiedName)) {
+    for (StructClass cl : classes) {
+      if (cl.isOwn() && !nodes.containsKey(cl.qualifiedName) && !mapRootClasses.containsKey(cl.qualifiedName)) {
 
         if (bDecompileInner) {
           StructInnerClassesAttribute inner = (StructInnerClassesAttribute)cl.getAttributes().getWithKey("InnerClasses");
@@ -157,14 +235,14 @@ public class ClassesProcessor {
 
         ClassNode node = new ClassNode(ClassNode.CLASS_ROOT, cl);
         node.access = cl.getAccessFlags();
-        mapRootClasses.put(cl.qualifiedName, node);
+        nodes.put(cl.qualifiedName, node);
       }
     }
 
     if (bDecompileInner) {
 
       // connect nested classes
-      for (Entry<String, ClassNode> ent : mapRootClasses.entrySet()) {
+      for (Entry<String, ClassNode> ent : nodes.entrySet()) {
         // root class?
         if (!mapInnerClasses.containsKey(ent.getKey())) {
 
@@ -177,7 +255,7 @@ public class ClassesProcessor {
           while (!stack.isEmpty()) {
 
             String superClass = stack.removeFirst();
-            ClassNode superNode = mapRootClasses.get(superClass);
+            ClassNode superNode = nodes.get(superClass);
 
             Set<String> setNestedClasses = mapNestedClassReferences.get(superClass);
             if (setNestedClasses != null) {
@@ -200,7 +278,7 @@ public class ClassesProcessor {
                   continue;
                 }
 
-                ClassNode nestedNode = mapRootClasses.get(nestedClass);
+                ClassNode nestedNode = nodes.get(nestedClass);
                 if (nestedNode == null) {
                   DecompilerContext.getLogger().writeMessage("Nested class " + nestedClass + " missing!", IFernflowerLogger.Severity.WARN);
                   continue;
@@ -255,15 +333,81 @@ public class ClassesProcessor {
         }
       }
     }
+
+    for (ClassNode node : nodes.values()) {
+      if (node.type == ClassNode.CLASS_ROOT) {
+        addDependentRoot(node, node.classStruct.qualifiedName);
+      }
+    }
+
+    mapRootClasses.putAll(nodes);
+  }
+
+  private void addDependentRoot(ClassNode node, String root) {
+    addDependentRoot(node.classStruct.qualifiedName, root);
+    for (String enclosing : node.enclosingClasses) {
+      addDependentRoot(enclosing, root);
+    }
+
+    for (ClassNode nested : node.nested) {
+      addDependentRoot(nested, root);
+    }
+  }
+
+  private void addDependentRoot(String className, String root) {
+    Set<String> set = mapDependentRoots.get(className);
+    if (set == null) {
+      mapDependentRoots.put(className, set = new HashSet<String>());
+    }
+    set.add(root);
+  }
+
+  /**
+   * Returns the names of the root classes whose nesting tree contains or refers to one of the given classes,
+   * i.e. the roots that have to be decompiled again if these classes change.
+   */
+  public synchronized Set<String> getDependentRoots(Collection<String> classNames) {
+    if (onDemand) {
+      for (String className : classNames) {
+        loadClass(className);
+      }
+    }
+
+    Set<String> roots = new HashSet<String>();
+    for (String className : classNames) {
+      Set<String> set = mapDependentRoots.get(className);
+      if (set != null) {
+        roots.addAll(set);
+      }
+    }
+    return roots;
   }
 
   public void writeClass(StructClass cl, TextBuffer buffer) throws IOException {
-    ClassNode root = mapRootClasses.get(cl.qualifiedName);
+    writeClass(cl, buffer, null);
+  }
+
+  /**
+   * Decompiles the class after the text already in the buffer. If an output is given, the result is streamed
+   * to it instead of being collected in the buffer whenever the text doesn't need to be post-processed.
+   */
+  public void writeClass(StructClass cl, TextBuffer buffer, Appendable out) throws IOException {
+    ClassNode root = mapRootClassesView.get(cl.qualifiedName);
     if (root.type != ClassNode.CLASS_ROOT) {
       return;
     }
 
-    DecompilerContext.getLogger().startReadingClass(cl.qualifiedName);
+    IFernflowerLogger logger = DecompilerContext.getLogger();
+    boolean events = logger.acceptsEvents();
+    long byteSize = 0, start = 0;
+    if (events) {
+      byteSize = getSize(root);
+      start = System.nanoTime();
+      logger.classStarted(cl.qualifiedName, byteSize);
+    }
+    boolean success = false;
+
+    logger.startReadingClass(cl.qualifiedName);
     try {
       ImportCollector importCollector = new ImportCollector(root);
       DecompilerContext.setImportCollector(importCollector);
@@ -303,24 +447,53 @@ public class ClassesProcessor {
 
       int offsetLines = buffer.countLines();
 
-      buffer.append(classBuffer);
+      boolean sourceMapping = DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING);
+      boolean dumpOriginalLines = sourceMapping && DecompilerContext.getOption(IFernflowerPreferences.DUMP_ORIGINAL_LINES);
 
-      if (DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING)) {
+      TextBuffer tail = buffer;
+      if (out != null && !dumpOriginalLines && !classBuffer.hasLineMapping()) {
+        // lines are only rearranged for the whole text, otherwise the parts can be written one after another
+        buffer.writeTo(out);
+        classBuffer.writeTo(out);
+        tail = new TextBuffer();
+      }
+      else {
+        buffer.append(classBuffer);
+      }
+
+      if (sourceMapping) {
         BytecodeSourceMapper mapper = DecompilerContext.getBytecodeSourceMapper();
         mapper.addTotalOffset(offsetLines);
-        if (DecompilerContext.getOption(IFernflowerPreferences.DUMP_ORIGINAL_LINES)) {
+        if (dumpOriginalLines) {
           buffer.dumpOriginalLineNumbers(mapper.getOriginalLinesMapping());
         }
         if (DecompilerContext.getOption(IFernflowerPreferences.UNIT_TEST_MODE)) {
-          buffer.appendLineSeparator();
-          mapper.dumpMapping(buffer, true);
+          tail.appendLineSeparator();
+          mapper.dumpMapping(tail, true);
         }
       }
+
+      if (out != null) {
+        tail.writeTo(out);
+      }
+
+      success = true;
     }
     finally {
       destroyWrappers(root);
-      DecompilerContext.getLogger().endReadingClass();
+      logger.endReadingClass();
+      if (events) {
+        logger.classFinished(cl.qualifiedName, byteSize, System.nanoTime() - start, success);
+      }
+    }
+  }
+
+  private static long getSize(ClassNode node) {
+    long size = node.type == ClassNode.CLASS_LAMBDA ? 0 : node.classStruct.getSize();
+    for (ClassNode nd : node.nested) {
+      size += getSize(nd);
     }
+    return size;
   }
 
   private static void initWrappers(ClassNode node) throws IOException {
@@ -363,10 +536,62 @@ public class ClassesProcessor {
     }
   }
 
+  /**
+   * Returns the nodes of all own classes by name. Nested classes are contained with their own type, lambdas
+   * by their generated names.
+   */
   public Map<String, ClassNode> getMapRootClasses() {
-    return mapRootClasses;
+    return mapRootClassesView;
   }
 
+  public List<StructClass> getRootClasses() {
+    if (onDemand) {
+      for (StructClass cl : context.getClasses().values()) {
+        if (cl.isOwn()) {
+          loadClass(cl.qualifiedName);
+        }
+      }
+    }
+
+    List<StructClass> result = new ArrayList<StructClass>();
+    synchronized (mapRootClasses) {
+      for (ClassNode node : mapRootClasses.values()) {
+        if (node.type == ClassNode.CLASS_ROOT) {
+          result.add(node.classStruct);
+        }
+      }
+    }
+    return result;
+  }
+
+
+  private class ClassNodesView extends AbstractMap<String, ClassNode> {
+    @Override
+    public ClassNode get(Object key) {
+      ClassNode node = mapRootClasses.get(key);
+      if (node == null && onDemand && key instanceof String && context.isOwnClass((String)key)) {
+        loadClass((String)key);
+        node = mapRootClasses.get(key);
+      }
+      return node;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public ClassNode put(String key, ClassNode value) {
+      return mapRootClasses.put(key, value);
+    }
+
+    // only the classes looked up so far if the nesting trees are built on demand
+    @Override
+    public Set<Entry<String, ClassNode>> entrySet() {
+      return Collections.unmodifiableMap(mapRootClasses).entrySet();
+    }
+  }
 
   public static class ClassNode implements Comparable<ClassNode> {
 
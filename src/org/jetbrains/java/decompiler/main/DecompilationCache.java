@@ -0,0 +1,187 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.main;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.collectors.BytecodeSourceMapper;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.struct.StructContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of decompiled classes. Entries are addressed by a hash of the bytes of a root class and all of its
+ * nested classes, the options that affect the output and the version of the decompiler, so that unchanged classes
+ * are not decompiled again. Classes referenced by the decompiled ones are not part of the key.
+ */
+public class DecompilationCache {
+
+  private static final int FORMAT_VERSION = 1;
+
+  // options that don't change the decompiled source
+  private static final Set<String> IGNORED_OPTIONS = new HashSet<String>(Arrays.asList(
+    IFernflowerPreferences.LOG_LEVEL, IFernflowerPreferences.THREADS, IFernflowerPreferences.PARALLEL_METHODS));
+
+  private final Path directory;
+  private final String engineVersion;
+
+  /**
+   * Creates a cache for the version of the decompiler jar, as declared by its {@code Implementation-Version}.
+   *
+   * @throws IllegalStateException if the version is unknown, e.g. when running from the compiled classes
+   */
+  public DecompilationCache(Path directory) {
+    this(directory, getImplementationVersion());
+  }
+
+  /**
+   * @param engineVersion identifies the decompiler build, entries written by another version are never returned
+   */
+  public DecompilationCache(Path directory, String engineVersion) {
+    if (engineVersion == null || engineVersion.isEmpty()) {
+      throw new IllegalArgumentException("The decompiler version is required to cache decompiled classes");
+    }
+    this.directory = directory;
+    this.engineVersion = engineVersion;
+  }
+
+  private static String getImplementationVersion() {
+    String version = DecompilationCache.class.getPackage().getImplementationVersion();
+    if (version == null) {
+      // entries of different builds would be mixed up otherwise
+      throw new IllegalStateException("Unknown decompiler version, it must be passed explicitly to cache decompiled classes");
+    }
+    return version;
+  }
+
+  public String getKey(ClassNode root, StructContext context, Map<String, Object> properties) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(FORMAT_VERSION);
+    hasher.putString(engineVersion, StandardCharsets.UTF_8);
+    putProperties(hasher, properties);
+    putClass(hasher, root, context);
+    return hasher.hash().toString();
+  }
+
+  static void putProperties(Hasher hasher, Map<String, Object> properties) {
+    for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(properties).entrySet()) {
+      if (entry.getValue() instanceof String && !IGNORED_OPTIONS.contains(entry.getKey())) {
+        hasher.putString(entry.getKey(), StandardCharsets.UTF_8).putByte((byte)0);
+        hasher.putString((String)entry.getValue(), StandardCharsets.UTF_8).putByte((byte)0);
+      }
+    }
+  }
+
+  private static void putClass(Hasher hasher, ClassNode node, StructContext context) throws IOException {
+    if (node.type == ClassNode.CLASS_LAMBDA) {
+      return; // part of the enclosing class
+    }
+
+    byte[] bytes = context.readClass(node.classStruct);
+    hasher.putString(node.classStruct.qualifiedName, StandardCharsets.UTF_8);
+    hasher.putInt(bytes != null ? bytes.length : -1);
+    if (bytes != null) {
+      hasher.putBytes(bytes);
+    }
+
+    List<ClassNode> nested = node.nested;
+    hasher.putInt(nested.size());
+    for (ClassNode child : nested) {
+      putClass(hasher, child, context);
+    }
+  }
+
+  /**
+   * Returns the cached source for the key, or {@code null} if there is no valid entry.
+   */
+  public Entry get(String key) throws IOException {
+    Path file = getFile(key);
+    try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file))))) {
+      if (in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+        return null;
+      }
+
+      byte[] content = new byte[in.readInt()];
+      in.readFully(content);
+      BytecodeSourceMapper mapper = in.readBoolean() ? BytecodeSourceMapper.readFrom(in) : null;
+      return new Entry(new String(content, StandardCharsets.UTF_8), mapper);
+    }
+    catch (NoSuchFileException ex) {
+      return null;
+    }
+  }
+
+  public void put(String key, String content, BytecodeSourceMapper mapper) throws IOException {
+    Path file = getFile(key);
+    Files.createDirectories(file.getParent());
+
+    // entries are written to a temporary file first, so that concurrent readers never see a partial entry
+    Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(key);
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+
+        out.writeBoolean(mapper != null);
+        if (mapper != null) {
+          mapper.writeTo(out);
+        }
+      }
+
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private Path getFile(String key) {
+    return directory.resolve(key.substring(0, 2)).resolve(key);
+  }
+
+  public static class Entry {
+    public final String content;
+    public final BytecodeSourceMapper mapper;
+
+    public Entry(String content, BytecodeSourceMapper mapper) {
+      this.content = content;
+      this.mapper = mapper;
+    }
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.main;
+
+import org.jetbrains.java.decompiler.main.extern.IDecompilationMetrics;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects the measurements of the method processing phases per method, and aggregates them per class and for
+ * the whole run. The collected metrics can be exported as JSON.
+ */
+public class DecompilationMetrics implements IDecompilationMetrics {
+
+  private final boolean trackAllocations;
+
+  // class -> method -> phase
+  private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, PhaseStats>>> classes =
+    new ConcurrentHashMap<String, ConcurrentMap<String, ConcurrentMap<String, PhaseStats>>>();
+
+  public DecompilationMetrics() {
+    this(false);
+  }
+
+  public DecompilationMetrics(boolean trackAllocations) {
+    this.trackAllocations = trackAllocations;
+  }
+
+  @Override
+  public boolean isTrackingAllocations() {
+    return trackAllocations;
+  }
+
+  @Override
+  public void recordPhase(String className, String method, String phase, long nanos, long allocatedBytes) {
+    getStats(className, method, phase).addPhase(nanos, allocatedBytes);
+  }
+
+  @Override
+  public void recordIterations(String className, String method, String loop, int iterations) {
+    getStats(className, method, loop).addIterations(iterations);
+  }
+
+  private PhaseStats getStats(String className, String method, String phase) {
+    return classes.computeIfAbsent(className, k -> new ConcurrentHashMap<String, ConcurrentMap<String, PhaseStats>>())
+      .computeIfAbsent(method, k -> new ConcurrentHashMap<String, PhaseStats>())
+      .computeIfAbsent(phase, k -> new PhaseStats());
+  }
+
+  public void clear() {
+    classes.clear();
+  }
+
+  /**
+   * Returns the phases of all methods of the run, sorted by name.
+   */
+  public Map<String, PhaseStats> getPhases() {
+    Map<String, PhaseStats> result = new TreeMap<String, PhaseStats>();
+    for (String className : classes.keySet()) {
+      addAll(result, getClassPhases(className));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the phases of all methods of a class, sorted by name.
+   */
+  public Map<String, PhaseStats> getClassPhases(String className) {
+    Map<String, PhaseStats> result = new TreeMap<String, PhaseStats>();
+    Map<String, ConcurrentMap<String, PhaseStats>> methods = classes.get(className);
+    if (methods != null) {
+      for (Map<String, PhaseStats> phases : methods.values()) {
+        addAll(result, phases);
+      }
+    }
+    return result;
+  }
+
+  public Map<String, PhaseStats> getMethodPhases(String className, String method) {
+    Map<String, ConcurrentMap<String, PhaseStats>> methods = classes.get(className);
+    Map<String, PhaseStats> phases = methods == null ? null : methods.get(method);
+    if (phases == null) {
+      return Collections.emptyMap();
+    }
+
+    Map<String, PhaseStats> result = new TreeMap<String, PhaseStats>();
+    addAll(result, phases);
+    return result;
+  }
+
+  private static void addAll(Map<String, PhaseStats> result, Map<String, PhaseStats> phases) {
+    for (Map.Entry<String, PhaseStats> entry : phases.entrySet()) {
+      PhaseStats stats = result.get(entry.getKey());
+      if (stats == null) {
+        result.put(entry.getKey(), stats = new PhaseStats());
+      }
+      stats.add(entry.getValue());
+    }
+  }
+
+  public String toJson() {
+    StringBuilder out = new StringBuilder();
+    try {
+      writeJson(out);
+    }
+    catch (IOException ex) {
+      throw new RuntimeException(ex); // not thrown by StringBuilder
+    }
+    return out.toString();
+  }
+
+  /**
+   * Writes the metrics as a JSON object with the phases of the run and, for each class, the phases of the class
+   * and of each of its methods.
+   */
+  public void writeJson(Appendable out) throws IOException {
+    out.append("{\"phases\":");
+    writePhases(out, getPhases());
+
+    out.append(",\"classes\":{");
+    boolean firstClass = true;
+    for (Map.Entry<String, ConcurrentMap<String, ConcurrentMap<String, PhaseStats>>> cl :
+      new TreeMap<String, ConcurrentMap<String, ConcurrentMap<String, PhaseStats>>>(classes).entrySet()) {
+      if (!firstClass) {
+        out.append(',');
+      }
+      firstClass = false;
+
+      writeString(out, cl.getKey());
+      out.append(":{\"phases\":");
+      writePhases(out, getClassPhases(cl.getKey()));
+
+      out.append(",\"methods\":{");
+      boolean firstMethod = true;
+      for (String method : new TreeMap<String, ConcurrentMap<String, PhaseStats>>(cl.getValue()).keySet()) {
+        if (!firstMethod) {
+          out.append(',');
+        }
+        firstMethod = false;
+
+        writeString(out, method);
+        out.append(':');
+        writePhases(out, getMethodPhases(cl.getKey(), method));
+      }
+      out.append("}}");
+    }
+    out.append("}}");
+  }
+
+  private static void writePhases(Appendable out, Map<String, PhaseStats> phases) throws IOException {
+    out.append('{');
+    boolean first = true;
+    for (Map.Entry<String, PhaseStats> entry : phases.entrySet()) {
+      if (!first) {
+        out.append(',');
+      }
+      first = false;
+
+      PhaseStats stats = entry.getValue();
+      writeString(out, entry.getKey());
+      out.append(":{\"count\":").append(String.valueOf(stats.getCount()));
+      out.append(",\"nanos\":").append(String.valueOf(stats.getNanos()));
+      out.append(",\"maxNanos\":").append(String.valueOf(stats.getMaxNanos()));
+      if (stats.getAllocatedBytes() >= 0) {
+        out.append(",\"allocatedBytes\":").append(String.valueOf(stats.getAllocatedBytes()));
+      }
+      out.append(",\"iterations\":").append(String.valueOf(stats.getIterations()));
+      out.append(",\"maxIterations\":").append(String.valueOf(stats.getMaxIterations()));
+      out.append('}');
+    }
+    out.append('}');
+  }
+
+  private static void writeString(Appendable out, String value) throws IOException {
+    out.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.append('\\').append(c);
+      }
+      else if (c < 0x20) {
+        out.append(String.format("\\u%04x", (int)c));
+      }
+      else {
+        out.append(c);
+      }
+    }
+    out.append('"');
+  }
+
+  public static class PhaseStats {
+    private long count;
+    private long nanos;
+    private long maxNanos;
+    private long allocatedBytes = -1;
+    private long iterations;
+    private int maxIterations;
+
+    synchronized void addPhase(long nanos, long allocatedBytes) {
+      count++;
+      this.nanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+      if (allocatedBytes >= 0) {
+        this.allocatedBytes = Math.max(this.allocatedBytes, 0) + allocatedBytes;
+      }
+    }
+
+    synchronized void addIterations(int iterations) {
+      this.iterations += iterations;
+      maxIterations = Math.max(maxIterations, iterations);
+    }
+
+    synchronized void add(PhaseStats stats) {
+      synchronized (stats) {
+        count += stats.count;
+        nanos += stats.nanos;
+        maxNanos = Math.max(maxNanos, stats.maxNanos);
+        if (stats.allocatedBytes >= 0) {
+          allocatedBytes = Math.max(allocatedBytes, 0) + stats.allocatedBytes;
+        }
+        iterations += stats.iterations;
+        maxIterations = Math.max(maxIterations, stats.maxIterations);
+      }
+    }
+
+    /**
+     * Returns how often the phase was run.
+     */
+    public synchronized long getCount() {
+      return count;
+    }
+
+    public synchronized long getNanos() {
+      return nanos;
+    }
+
+    public synchronized long getMaxNanos() {
+      return maxNanos;
+    }
+
+    /**
+     * Returns the allocated bytes, or -1 if allocations were not measured.
+     */
+    public synchronized long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+    /**
+     * Returns the total iterations of a fixpoint loop over all runs of the method pipeline.
+     */
+    public synchronized long getIterations() {
+      return iterations;
+    }
+
+    public synchronized int getMaxIterations() {
+      return maxIterations;
+    }
+  }
+}
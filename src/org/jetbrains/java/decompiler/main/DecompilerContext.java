@@ -19,6 +19,7 @@ import org.jetbrains.java.decompiler.main.collectors.BytecodeSourceMapper;
 import org.jetbrains.java.decompiler.main.collectors.CounterContainer;
 import org.jetbrains.java.decompiler.main.collectors.ImportCollector;
 import org.jetbrains.java.decompiler.main.collectors.VarNamesCollector;
+import org.jetbrains.java.decompiler.main.extern.IDecompilationMetrics;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.main.extern.IVariableNamingFactory;
@@ -26,6 +27,7 @@ import org.jetbrains.java.decompiler.modules.renamer.PoolInterceptor;
 import org.jetbrains.java.decompiler.struct.StructContext;
 import org.jetbrains.java.decompiler.util.JADNameProvider;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -52,6 +54,8 @@ public class DecompilerContext {
   private IFernflowerLogger logger;
   private BytecodeSourceMapper bytecodeSourceMapper;
   private IVariableNamingFactory renamerFactory;
+  private MethodMemoCache methodCache;
+  private IDecompilationMetrics metrics;
 
   private DecompilerContext(Map<String, Object> properties) {
     this.properties = properties;
@@ -81,6 +85,27 @@ public class DecompilerContext {
     }
   }
 
+  /**
+   * Creates a copy of the current context that can be installed on another thread with
+   * {@link #setCurrentContext(DecompilerContext)}. Properties are copied, the struct context, class processor,
+   * pool interceptor, logger, naming factory, method cache and metrics are shared, and all per-class collectors
+   * start out empty.
+   */
+  public static DecompilerContext forkContext() {
+    DecompilerContext parent = getCurrentContext();
+
+    DecompilerContext context = new DecompilerContext(new HashMap<String, Object>(parent.properties));
+    context.structContext = parent.structContext;
+    context.classProcessor = parent.classProcessor;
+    context.poolInterceptor = parent.poolInterceptor;
+    context.logger = parent.logger;
+    context.renamerFactory = parent.renamerFactory;
+    context.methodCache = parent.methodCache;
+    context.metrics = parent.metrics;
+    context.counterContainer = new CounterContainer();
+    return context;
+  }
+
   public static DecompilerContext getCurrentContext() {
     return currentContext.get();
   }
@@ -89,6 +114,10 @@ public class DecompilerContext {
     currentContext.set(context);
   }
 
+  public static Map<String, Object> getProperties() {
+    return Collections.unmodifiableMap(getCurrentContext().properties);
+  }
+
   public static Object getProperty(String key) {
     return getCurrentContext().properties.get(key);
   }
@@ -157,6 +186,22 @@ public class DecompilerContext {
     getCurrentContext().bytecodeSourceMapper = bytecodeSourceMapper;
   }
 
+  public static MethodMemoCache getMethodCache() {
+    return getCurrentContext().methodCache;
+  }
+
+  public static void setMethodCache(MethodMemoCache methodCache) {
+    getCurrentContext().methodCache = methodCache;
+  }
+
+  public static IDecompilationMetrics getMetrics() {
+    return getCurrentContext().metrics;
+  }
+
+  public static void setMetrics(IDecompilationMetrics metrics) {
+    getCurrentContext().metrics = metrics;
+  }
+
   public static IFernflowerLogger getLogger() {
     return getCurrentContext().logger;
   }
@@ -16,7 +16,9 @@
 package org.jetbrains.java.decompiler.main;
 
 import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.collectors.BytecodeSourceMapper;
 import org.jetbrains.java.decompiler.main.collectors.CounterContainer;
+import org.jetbrains.java.decompiler.main.extern.IDecompilationMetrics;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.modules.renamer.IdentifierConverter;
@@ -24,14 +26,29 @@ import org.jetbrains.java.decompiler.struct.IDecompiledData;
 import org.jetbrains.java.decompiler.struct.StructClass;
 import org.jetbrains.java.decompiler.struct.StructContext;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class Fernflower implements IDecompiledData, Closeable {
 
   private final StructContext structContext;
   private ClassesProcessor classesProcessor;
+  private DecompilationCache cache;
 
   public Fernflower(StructContext context, Map<String, Object> options, IFernflowerLogger logger) {
     this.structContext = context;
@@ -50,6 +67,38 @@ public class Fernflower implements IDecompiledData, Closeable {
     DecompilerContext.setStructContext(structContext);
   }
 
+  /**
+   * Rebuilds the class tree after the given classes have been changed, added or removed in the struct context.
+   * Returns the root classes that have to be decompiled again because their nesting tree contains or refers to
+   * one of the changed classes, sorted by name. Roots that no longer exist are not returned.
+   */
+  public List<StructClass> updateClasses(Collection<String> changedClasses) throws IOException {
+    if (DecompilerContext.getOption(IFernflowerPreferences.RENAME_ENTITIES)) {
+      // renaming depends on the whole context
+      structContext.reloadContext();
+      decompileContext();
+      List<StructClass> classes = classesProcessor.getRootClasses();
+      classes.sort(Comparator.comparing(cl -> cl.qualifiedName));
+      return classes;
+    }
+
+    Set<String> roots = classesProcessor.getDependentRoots(changedClasses);
+
+    classesProcessor = new ClassesProcessor(structContext);
+    DecompilerContext.setClassProcessor(classesProcessor);
+    roots.addAll(classesProcessor.getDependentRoots(changedClasses));
+
+    List<StructClass> classes = new ArrayList<StructClass>();
+    for (String root : roots) {
+      ClassNode node = classesProcessor.getMapRootClasses().get(root);
+      if (node != null && node.type == ClassNode.CLASS_ROOT) {
+        classes.add(node.classStruct);
+      }
+    }
+    classes.sort(Comparator.comparing(cl -> cl.qualifiedName));
+    return classes;
+  }
+
   private void clearContext() {
     DecompilerContext.setCurrentContext(null);
   }
@@ -75,13 +124,48 @@ public class Fernflower implements IDecompiledData, Closeable {
     }
   }
 
+  /**
+   * Sets a persistent cache that is consulted before a root class is decompiled, {@code null} disables caching.
+   */
+  public void setCache(DecompilationCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Sets a cache of decompiled method bodies, which may be shared with other instances, {@code null} disables it.
+   */
+  public void setMethodCache(MethodMemoCache methodCache) {
+    DecompilerContext.setMethodCache(methodCache);
+  }
+
+  /**
+   * Sets the receiver of the time spent in the phases of processing methods, {@code null} disables measuring.
+   */
+  public void setMetrics(IDecompilationMetrics metrics) {
+    DecompilerContext.setMetrics(metrics);
+  }
+
   @Override
   public String getClassContent(StructClass cl) {
     try {
+      String key = getCacheKey(cl);
+      if (key != null) {
+        DecompilationCache.Entry entry = getCachedClass(key);
+        if (entry != null) {
+          DecompilerContext.setBytecodeSourceMapper(entry.mapper != null ? entry.mapper : new BytecodeSourceMapper());
+          return entry.content;
+        }
+      }
+
       TextBuffer buffer = new TextBuffer(ClassesProcessor.AVERAGE_CLASS_SIZE);
       buffer.append(DecompilerContext.getProperty(IFernflowerPreferences.BANNER).toString());
       classesProcessor.writeClass(cl, buffer);
-      return buffer.toString();
+      String content = buffer.toString();
+
+      if (key != null) {
+        putCachedClass(key, content);
+      }
+      return content;
     }
     catch (Throwable ex) {
       DecompilerContext.getLogger().writeMessage("Class " + cl.qualifiedName + " couldn't be fully decompiled.", ex);
@@ -89,6 +173,168 @@ public class Fernflower implements IDecompiledData, Closeable {
     }
   }
 
+  /**
+   * Streams the source of the class to the output without collecting it in a string first. Returns {@code false}
+   * if the class couldn't be decompiled; I/O errors are passed on to the caller.
+   */
+  @Override
+  public boolean writeClassContent(StructClass cl, Appendable out) throws IOException {
+    if (cache != null) {
+      ClassNode node = classesProcessor.getMapRootClasses().get(cl.qualifiedName);
+      if (node == null || node.type != ClassNode.CLASS_ROOT) {
+        return true;
+      }
+
+      // cached classes have to be collected anyway
+      String content = getClassContent(cl);
+      if (content == null) {
+        return false;
+      }
+      out.append(content);
+      return true;
+    }
+
+    try {
+      TextBuffer buffer = new TextBuffer();
+      buffer.append(DecompilerContext.getProperty(IFernflowerPreferences.BANNER).toString());
+      classesProcessor.writeClass(cl, buffer, out);
+      return true;
+    }
+    catch (IOException ex) {
+      throw ex;
+    }
+    catch (Throwable ex) {
+      DecompilerContext.getLogger().writeMessage("Class " + cl.qualifiedName + " couldn't be fully decompiled.", ex);
+      return false;
+    }
+  }
+
+  private String getCacheKey(StructClass cl) {
+    // renamed entities depend on the whole context, not only on the classes in the key
+    if (cache == null || DecompilerContext.getOption(IFernflowerPreferences.RENAME_ENTITIES)) {
+      return null;
+    }
+
+    ClassNode node = classesProcessor.getMapRootClasses().get(cl.qualifiedName);
+    if (node == null || node.type != ClassNode.CLASS_ROOT) {
+      return null;
+    }
+
+    try {
+      return cache.getKey(node, structContext, DecompilerContext.getProperties());
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot compute cache key for class " + cl.qualifiedName + ": " + ex, IFernflowerLogger.Severity.WARN);
+      return null;
+    }
+  }
+
+  private DecompilationCache.Entry getCachedClass(String key) {
+    try {
+      return cache.get(key);
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot read cached class " + key + ": " + ex, IFernflowerLogger.Severity.WARN);
+      return null;
+    }
+  }
+
+  private void putCachedClass(String key, String content) {
+    try {
+      cache.put(key, content, DecompilerContext.getBytecodeSourceMapper());
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot write cached class " + key + ": " + ex, IFernflowerLogger.Severity.WARN);
+    }
+  }
+
+  /**
+   * Decompiles all root classes of the context on a pool of {@link IFernflowerPreferences#THREADS} worker threads
+   * (all available processors if not set) and passes the results to the consumer. The consumer is invoked
+   * from the worker threads, in no particular order; a {@code null} content means the class couldn't be decompiled.
+   */
+  public void decompileClasses(BiConsumer<StructClass, String> consumer) throws InterruptedException {
+    processClasses(cl -> consumer.accept(cl, getClassContent(cl)));
+  }
+
+  public void decompileClasses(ExecutorService executor, BiConsumer<StructClass, String> consumer) throws InterruptedException {
+    processClasses(executor, cl -> consumer.accept(cl, getClassContent(cl)));
+  }
+
+  /**
+   * Decompiles the given root classes on the executor, each of them with its own fork of the current
+   * {@link DecompilerContext}. Returns once all classes have been passed to the consumer.
+   */
+  public void decompileClasses(Collection<StructClass> classes, ExecutorService executor, BiConsumer<StructClass, String> consumer)
+    throws InterruptedException {
+    processClasses(classes, executor, cl -> consumer.accept(cl, getClassContent(cl)));
+  }
+
+  /**
+   * Passes all root classes of the context to the task on a pool of worker threads like
+   * {@link #decompileClasses(BiConsumer)}, so that the task can decompile them itself, e.g. with
+   * {@link #writeClassContent}.
+   */
+  public void processClasses(Consumer<StructClass> task) throws InterruptedException {
+    int threads = Integer.parseInt(DecompilerContext.getProperty(IFernflowerPreferences.THREADS).toString());
+    if (threads <= 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("Java decompiler %d")
+      .setDaemon(true)
+      .build());
+    try {
+      processClasses(executor, task);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void processClasses(ExecutorService executor, Consumer<StructClass> task) throws InterruptedException {
+    List<StructClass> classes = classesProcessor.getRootClasses();
+    classes.sort(Comparator.comparing(cl -> cl.qualifiedName));
+    processClasses(classes, executor, task);
+  }
+
+  /**
+   * Passes the given root classes to the task on the executor, each of them with its own fork of the current
+   * {@link DecompilerContext}. Returns once the task has completed for all classes.
+   */
+  public void processClasses(Collection<StructClass> classes, ExecutorService executor, Consumer<StructClass> task)
+    throws InterruptedException {
+    List<Future<?>> futures = new ArrayList<Future<?>>(classes.size());
+
+    try {
+      for (StructClass cl : classes) {
+        DecompilerContext context = DecompilerContext.forkContext();
+        futures.add(executor.submit(() -> {
+          DecompilerContext.setCurrentContext(context);
+          try {
+            task.accept(cl);
+          }
+          finally {
+            DecompilerContext.setCurrentContext(null);
+          }
+        }));
+      }
+
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    catch (ExecutionException ex) {
+      throw Throwables.propagate(ex.getCause());
+    }
+    finally {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
   @Override
   public void close() throws IOException {
     clearContext();
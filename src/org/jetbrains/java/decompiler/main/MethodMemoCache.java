@@ -0,0 +1,411 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.main;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.jetbrains.java.decompiler.code.CodeConstants;
+import org.jetbrains.java.decompiler.code.ExceptionHandler;
+import org.jetbrains.java.decompiler.code.Instruction;
+import org.jetbrains.java.decompiler.code.InstructionSequence;
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.collectors.BytecodeMappingTracer;
+import org.jetbrains.java.decompiler.main.collectors.ImportCollector;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.modules.decompiler.vars.LVTVariable;
+import org.jetbrains.java.decompiler.modules.decompiler.vars.VarProcessor;
+import org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionPair;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.jetbrains.java.decompiler.struct.StructContext;
+import org.jetbrains.java.decompiler.struct.StructField;
+import org.jetbrains.java.decompiler.struct.StructMember;
+import org.jetbrains.java.decompiler.struct.StructMethod;
+import org.jetbrains.java.decompiler.struct.attr.StructGeneralAttribute;
+import org.jetbrains.java.decompiler.struct.attr.StructGenericSignatureAttribute;
+import org.jetbrains.java.decompiler.struct.attr.StructLocalVariableTableAttribute;
+import org.jetbrains.java.decompiler.struct.consts.ConstantPool;
+import org.jetbrains.java.decompiler.struct.consts.LinkConstant;
+import org.jetbrains.java.decompiler.struct.consts.PooledConstant;
+import org.jetbrains.java.decompiler.struct.consts.PrimitiveConstant;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * In-memory cache of decompiled method bodies that can be shared between decompiler runs. Methods are addressed by
+ * a hash of their instructions with the constant pool references resolved, of the parts of the enclosing and the
+ * referenced classes that the output depends on and of the options, so that methods which are identical in several
+ * classes or versions of a library are decompiled only once.
+ * <p>
+ * Only methods of top level classes that don't refer to nested, anonymous or synthetic classes and members are
+ * memoized, and only as long as entities are not renamed and the original line numbers are not used.
+ */
+public class MethodMemoCache {
+
+  private static final String[] VARIABLE_TABLES = {
+    StructGeneralAttribute.ATTRIBUTE_LOCAL_VARIABLE_TABLE, StructGeneralAttribute.ATTRIBUTE_LOCAL_VARIABLE_TYPE_TABLE};
+
+  private final Cache<String, Entry> cache;
+
+  public MethodMemoCache() {
+    this(10000);
+  }
+
+  public MethodMemoCache(long maximumSize) {
+    cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  public Entry get(String key) {
+    return cache.getIfPresent(key);
+  }
+
+  public void put(String key, Entry entry) {
+    cache.put(key, entry);
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns the key of the method in the current class, or {@code null} if the method cannot be memoized.
+   */
+  public String getKey(StructMethod mt, Set<String> fieldNames) throws IOException {
+    if (DecompilerContext.getOption(IFernflowerPreferences.USE_DEBUG_LINE_NUMBERS) ||
+        DecompilerContext.getOption(IFernflowerPreferences.RENAME_ENTITIES)) {
+      return null;
+    }
+
+    String name = mt.getName();
+    if (!mt.containsCode() || CodeConstants.INIT_NAME.equals(name) || CodeConstants.CLINIT_NAME.equals(name) || isNested(name)) {
+      return null; // initializers and lambda bodies are changed by the class level processing
+    }
+
+    StructClass cl = mt.getClassStruct();
+    ClassNode node = DecompilerContext.getClassProcessor().getMapRootClasses().get(cl.qualifiedName);
+    if (node == null || node.type != ClassNode.CLASS_ROOT || isNested(cl.qualifiedName)) {
+      return null;
+    }
+    for (ClassNode nested : node.nested) {
+      if (nested.type != ClassNode.CLASS_MEMBER) {
+        return null; // local and anonymous classes change the variables of their enclosing method
+      }
+    }
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    DecompilationCache.putProperties(hasher, DecompilerContext.getProperties());
+
+    putString(hasher, cl.qualifiedName);
+    putString(hasher, cl.superClass == null ? null : cl.superClass.getString());
+    putString(hasher, getSignature(cl));
+    hasher.putInt(cl.getAccessFlags()).putInt(cl.getBytecodeVersion());
+
+    // variables are renamed if they clash with a field
+    for (String field : new TreeSet<String>(fieldNames)) {
+      putString(hasher, field);
+    }
+
+    String descriptor = mt.getDescriptor();
+    String signature = getSignature(mt);
+    if (isNested(descriptor) || isNested(signature)) {
+      return null;
+    }
+    putString(hasher, name);
+    putString(hasher, descriptor);
+    putString(hasher, signature);
+    hasher.putInt(mt.getAccessFlags()).putInt(mt.getLocalVariables());
+
+    for (String table : VARIABLE_TABLES) {
+      StructLocalVariableTableAttribute attr = (StructLocalVariableTableAttribute)mt.getAttributes().getWithKey(table);
+      putString(hasher, attr == null ? null : table);
+      if (attr != null) {
+        for (List<LVTVariable> variables : new TreeMap<Integer, List<LVTVariable>>(attr.getMapVarNames()).values()) {
+          for (LVTVariable variable : variables) {
+            if (isNested(variable.getDesc()) || isNested(variable.getSig())) {
+              return null;
+            }
+            hasher.putInt(variable.index).putInt(variable.start).putInt(variable.end);
+            putString(hasher, variable.name);
+            putString(hasher, variable.getDesc());
+            putString(hasher, variable.getSig());
+          }
+        }
+      }
+    }
+
+    Set<String> classes = new TreeSet<String>();
+    Set<String> fields = new TreeSet<String>();
+    Set<String> methods = new TreeSet<String>();
+
+    mt.expandData();
+    InstructionSequence seq = mt.getInstructionSequence();
+    ConstantPool pool = cl.getPool();
+
+    hasher.putInt(seq.length());
+    for (int i = 0; i < seq.length(); i++) {
+      Instruction instr = seq.getInstr(i);
+      hasher.putInt(seq.getOffset(i)).putInt(instr.opcode).putBoolean(instr.wide).putInt(instr.operandsCount());
+
+      for (int j = 0; j < instr.operandsCount(); j++) {
+        if (j == 0 && hasPoolOperand(instr.opcode)) {
+          if (!putConstant(hasher, pool.getConstant(instr.getOperand(0)), classes, fields, methods)) {
+            return null;
+          }
+        }
+        else {
+          hasher.putInt(instr.getOperand(j));
+        }
+      }
+    }
+
+    List<ExceptionHandler> handlers = seq.getExceptionTable().getHandlers();
+    hasher.putInt(handlers.size());
+    for (ExceptionHandler handler : handlers) {
+      if (isNested(handler.exceptionClass)) {
+        return null;
+      }
+      hasher.putInt(handler.from).putInt(handler.to).putInt(handler.handler);
+      putString(hasher, handler.exceptionClass);
+      if (handler.exceptionClass != null) {
+        classes.add(handler.exceptionClass);
+      }
+    }
+
+    // the parts of the referenced classes that are looked up while decompiling
+    StructContext context = DecompilerContext.getStructContext();
+
+    for (String className : classes) {
+      putClass(hasher, context, className);
+    }
+
+    for (String field : fields) {
+      String[] parts = field.split(" ");
+      StructClass owner = putClass(hasher, context, parts[0]);
+      while (owner != null) {
+        StructField fd = owner.getField(parts[1], parts[2]);
+        hasher.putBoolean(fd != null);
+        if (fd != null) {
+          hasher.putInt(fd.getAccessFlags());
+          putString(hasher, getSignature(fd));
+        }
+        owner = owner.superClass == null ? null : putClass(hasher, context, owner.superClass.getString());
+      }
+    }
+
+    for (String method : methods) {
+      String[] parts = method.split(" ");
+      StructClass owner = putClass(hasher, context, parts[0]);
+      if (owner != null) {
+        for (StructMethod overload : owner.getMethods()) {
+          if (overload.getName().equals(parts[1])) {
+            putString(hasher, overload.getDescriptor());
+            putString(hasher, getSignature(overload));
+            hasher.putInt(overload.getAccessFlags());
+          }
+        }
+      }
+    }
+
+    return hasher.hash().toString();
+  }
+
+  private static boolean putConstant(Hasher hasher, PooledConstant constant,
+                                     Set<String> classes, Set<String> fields, Set<String> methods) {
+    if (constant instanceof LinkConstant) {
+      LinkConstant link = (LinkConstant)constant;
+      if (isNested(link.classname) || isNested(link.elementname) || isNested(link.descriptor)) {
+        return false;
+      }
+
+      if (link.type == CodeConstants.CONSTANT_Fieldref) {
+        fields.add(link.classname + " " + link.elementname + " " + link.descriptor);
+      }
+      else if (link.type == CodeConstants.CONSTANT_Methodref || link.type == CodeConstants.CONSTANT_InterfaceMethodref) {
+        methods.add(link.classname + " " + link.elementname);
+      }
+      else {
+        return false; // method handles and dynamic call sites
+      }
+      classes.add(link.classname);
+
+      hasher.putInt(link.type);
+      putString(hasher, link.classname);
+      putString(hasher, link.elementname);
+      putString(hasher, link.descriptor);
+      return true;
+    }
+
+    if (constant instanceof PrimitiveConstant) {
+      PrimitiveConstant primitive = (PrimitiveConstant)constant;
+      hasher.putInt(primitive.type);
+
+      switch (primitive.type) {
+        case CodeConstants.CONSTANT_Class:
+          if (isNested(primitive.getString())) {
+            return false;
+          }
+          classes.add(primitive.getString());
+          putString(hasher, primitive.getString());
+          return true;
+        case CodeConstants.CONSTANT_Integer:
+        case CodeConstants.CONSTANT_Long:
+        case CodeConstants.CONSTANT_String:
+          putString(hasher, String.valueOf(primitive.value));
+          return true;
+        case CodeConstants.CONSTANT_Float:
+          hasher.putInt(Float.floatToRawIntBits(primitive.getFloat()));
+          return true;
+        case CodeConstants.CONSTANT_Double:
+          hasher.putLong(Double.doubleToRawLongBits(primitive.getDouble()));
+          return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static StructClass putClass(Hasher hasher, StructContext context, String name) {
+    StructClass cl = context.getClass(name);
+    ClassNode node = DecompilerContext.getClassProcessor().getMapRootClasses().get(name);
+
+    putString(hasher, name);
+    hasher.putInt(node == null ? -1 : node.type);
+    hasher.putBoolean(cl != null);
+    if (cl != null) {
+      hasher.putBoolean(cl.isOwn()).putInt(cl.getAccessFlags());
+      putString(hasher, cl.superClass == null ? null : cl.superClass.getString());
+      putString(hasher, getSignature(cl));
+    }
+    return cl;
+  }
+
+  private static boolean hasPoolOperand(int opcode) {
+    switch (opcode) {
+      case CodeConstants.opc_ldc:
+      case CodeConstants.opc_ldc_w:
+      case CodeConstants.opc_ldc2_w:
+      case CodeConstants.opc_new:
+      case CodeConstants.opc_anewarray:
+      case CodeConstants.opc_checkcast:
+      case CodeConstants.opc_instanceof:
+      case CodeConstants.opc_multianewarray:
+        return true;
+      default:
+        return opcode >= CodeConstants.opc_getstatic && opcode <= CodeConstants.opc_invokedynamic;
+    }
+  }
+
+  // names of nested, anonymous and synthetic classes and members, whose decompilation depends on other classes
+  private static boolean isNested(String name) {
+    return name != null && name.indexOf('$') >= 0;
+  }
+
+  private static String getSignature(StructMember member) {
+    StructGenericSignatureAttribute attr =
+      (StructGenericSignatureAttribute)member.getAttributes().getWithKey(StructGeneralAttribute.ATTRIBUTE_SIGNATURE);
+    return attr == null ? null : attr.getSignature();
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    if (value == null) {
+      hasher.putInt(-1);
+    }
+    else {
+      hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+    }
+  }
+
+  public static class Entry {
+    private final String content;
+    private final int lines;
+    private final Map<Integer, Integer> mapping;
+    private final Map<Integer, String> parameterNames;
+    private final Map<String, Boolean> processingNames;
+    private final Map<String, Boolean> importedNames = new LinkedHashMap<String, Boolean>();
+    private final Map<String, String> shortNames = new LinkedHashMap<String, String>();
+
+    /**
+     * @param mapping bytecode offsets mapped to source lines relative to the first line of the body
+     * @param processingNames names requested from the import collector while the method was processed
+     * @param names the forked import collector the body was written with
+     */
+    public Entry(String content,
+                 int lines,
+                 Map<Integer, Integer> mapping,
+                 Map<Integer, String> parameterNames,
+                 Map<String, Boolean> processingNames,
+                 ImportCollector names) {
+      this.content = content;
+      this.lines = lines;
+      this.mapping = new TreeMap<Integer, Integer>(mapping);
+      this.parameterNames = new TreeMap<Integer, String>(parameterNames);
+      this.processingNames = new LinkedHashMap<String, Boolean>(processingNames);
+
+      for (Map.Entry<String, Boolean> entry : names.getRecordedNames().entrySet()) {
+        importedNames.put(entry.getKey(), entry.getValue());
+        shortNames.put(entry.getKey(), names.getShortName(entry.getKey(), entry.getValue()));
+      }
+    }
+
+    public void setParameterNames(VarProcessor varProc) {
+      for (Map.Entry<Integer, String> entry : parameterNames.entrySet()) {
+        varProc.setVarName(new VarVersionPair(entry.getKey().intValue(), 0), entry.getValue());
+      }
+    }
+
+    /**
+     * Registers the names that processing the method would have requested.
+     */
+    public void registerProcessingNames(ImportCollector imports) {
+      for (Map.Entry<String, Boolean> entry : processingNames.entrySet()) {
+        imports.getShortName(entry.getKey(), entry.getValue());
+      }
+    }
+
+    /**
+     * Registers the names used by the body, if the collector resolves all of them to the same short names as
+     * when the body was written. Returns {@code false} and leaves the collector unchanged otherwise.
+     */
+    public boolean registerNames(ImportCollector imports) {
+      ImportCollector fork = imports.fork();
+      for (Map.Entry<String, Boolean> entry : importedNames.entrySet()) {
+        if (!shortNames.get(entry.getKey()).equals(fork.getShortName(entry.getKey(), entry.getValue()))) {
+          return false;
+        }
+      }
+      imports.merge(fork);
+      return true;
+    }
+
+    public void appendTo(TextBuffer buffer, BytecodeMappingTracer tracer) {
+      int startLine = tracer.getCurrentSourceLine();
+      for (Map.Entry<Integer, Integer> entry : mapping.entrySet()) {
+        tracer.getMapping().putIfAbsent(entry.getKey(), startLine + entry.getValue());
+      }
+      buffer.append(content);
+      tracer.incrementCurrentSourceLine(lines);
+    }
+  }
+}
@@ -17,6 +17,8 @@ package org.jetbrains.java.decompiler.main;
 
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.*;
 
 /**
@@ -25,6 +27,8 @@ import java.util.*;
  * @author egor
  */
 public class TextBuffer {
+  private static final int WRITE_CHUNK_SIZE = 8192;
+
   private final String myLineSeparator = DecompilerContext.getNewLineSeparator();
   private final String myIndent = (String)DecompilerContext.getProperty(IFernflowerPreferences.INDENT_STRING);
   private final StringBuilder myStringBuilder;
@@ -143,6 +147,39 @@ public class TextBuffer {
     }
   }
 
+  /**
+   * Returns whether lines are rearranged according to a line mapping when the text is converted to a string.
+   */
+  public boolean hasLineMapping() {
+    return (myLineToOffsetMapping != null && !myLineToOffsetMapping.isEmpty()) || myLineMapping != null;
+  }
+
+  /**
+   * Writes the same text as {@link #toString()} to the given output. Unless lines have to be rearranged,
+   * the text is copied in chunks instead of being materialized as a whole.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    if (hasLineMapping()) {
+      out.append(toString());
+      return;
+    }
+
+    int length = myStringBuilder.length();
+    if (out instanceof Writer) {
+      char[] chunk = new char[Math.min(length, WRITE_CHUNK_SIZE)];
+      for (int start = 0; start < length; start += chunk.length) {
+        int end = Math.min(length, start + chunk.length);
+        myStringBuilder.getChars(start, end, chunk, 0);
+        ((Writer)out).write(chunk, 0, end - start);
+      }
+    }
+    else {
+      for (int start = 0; start < length; start += WRITE_CHUNK_SIZE) {
+        out.append(myStringBuilder, start, Math.min(length, start + WRITE_CHUNK_SIZE));
+      }
+    }
+  }
+
   private String addOriginalLineNumbers() {
     StringBuilder sb = new StringBuilder();
     int lineStart = 0, lineEnd;
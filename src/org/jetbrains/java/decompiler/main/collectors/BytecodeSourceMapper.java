@@ -18,6 +18,9 @@ package org.jetbrains.java.decompiler.main.collectors;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.TextBuffer;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -138,4 +141,69 @@ public class BytecodeSourceMapper {
     }
     return res;
   }
+
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeInt(offset_total);
+
+    out.writeInt(mapping.size());
+    for (Entry<String, Map<String, Map<Integer, Integer>>> class_entry : mapping.entrySet()) {
+      out.writeUTF(class_entry.getKey());
+      out.writeInt(class_entry.getValue().size());
+      for (Entry<String, Map<Integer, Integer>> method_entry : class_entry.getValue().entrySet()) {
+        out.writeUTF(method_entry.getKey());
+        writeIntMap(out, method_entry.getValue());
+      }
+    }
+
+    writeIntMap(out, linesMapping);
+
+    out.writeInt(unmappedLines.size());
+    for (Integer line : unmappedLines) {
+      out.writeInt(line);
+    }
+  }
+
+  public static BytecodeSourceMapper readFrom(DataInput in) throws IOException {
+    BytecodeSourceMapper mapper = new BytecodeSourceMapper();
+    mapper.offset_total = in.readInt();
+
+    int classes = in.readInt();
+    for (int i = 0; i < classes; i++) {
+      Map<String, Map<Integer, Integer>> class_mapping = new LinkedHashMap<String, Map<Integer, Integer>>();
+      mapper.mapping.put(in.readUTF(), class_mapping);
+
+      int methods = in.readInt();
+      for (int j = 0; j < methods; j++) {
+        String method = in.readUTF();
+        class_mapping.put(method, readIntMap(in));
+      }
+    }
+
+    mapper.linesMapping.putAll(readIntMap(in));
+
+    int unmapped = in.readInt();
+    for (int i = 0; i < unmapped; i++) {
+      mapper.unmappedLines.add(in.readInt());
+    }
+
+    return mapper;
+  }
+
+  private static void writeIntMap(DataOutput out, Map<Integer, Integer> map) throws IOException {
+    out.writeInt(map.size());
+    for (Entry<Integer, Integer> entry : map.entrySet()) {
+      out.writeInt(entry.getKey());
+      out.writeInt(entry.getValue());
+    }
+  }
+
+  private static Map<Integer, Integer> readIntMap(DataInput in) throws IOException {
+    int size = in.readInt();
+    Map<Integer, Integer> map = new HashMap<Integer, Integer>();
+    for (int i = 0; i < size; i++) {
+      int key = in.readInt();
+      map.put(key, in.readInt());
+    }
+    return map;
+  }
 }
@@ -23,6 +23,16 @@ public class CounterContainer {
 
   private final int[] values = new int[]{1, 1, 1};
 
+  public CounterContainer() { }
+
+  public CounterContainer(CounterContainer counters) {
+    setCounters(counters);
+  }
+
+  public void setCounters(CounterContainer counters) {
+    System.arraycopy(counters.values, 0, values, 0, values.length);
+  }
+
   public void setCounter(int counter, int value) {
     values[counter] = value;
   }
@@ -33,8 +33,10 @@ public class ImportCollector {
   private final Set<String> setNotImportedNames = new HashSet<String>();
   private String currentPackageSlash = "";
   private String currentPackagePoint = "";
+  private final Map<String, Boolean> mapRecordedNames;
 
   public ImportCollector(ClassNode root) {
+    mapRecordedNames = null;
 
     String clname = root.classStruct.qualifiedName;
     int index = clname.lastIndexOf("/");
@@ -45,12 +47,46 @@ public class ImportCollector {
     }
   }
 
+  private ImportCollector(ImportCollector parent) {
+    mapSimpleNames.putAll(parent.mapSimpleNames);
+    setNotImportedNames.addAll(parent.setNotImportedNames);
+    currentPackageSlash = parent.currentPackageSlash;
+    currentPackagePoint = parent.currentPackagePoint;
+    mapRecordedNames = new LinkedHashMap<String, Boolean>();
+  }
+
+  /**
+   * Returns a copy of this collector that remembers the names requested from it, so that they can be
+   * registered in the original collector later on with {@link #merge(ImportCollector)}.
+   */
+  public ImportCollector fork() {
+    return new ImportCollector(this);
+  }
+
+  public void merge(ImportCollector fork) {
+    for (Entry<String, Boolean> entry : fork.mapRecordedNames.entrySet()) {
+      getShortName(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Returns the names requested from a forked collector in the order of their first request, mapped to whether
+   * they were requested as imported names.
+   */
+  public Map<String, Boolean> getRecordedNames() {
+    return Collections.unmodifiableMap(mapRecordedNames);
+  }
+
   public String getShortName(String fullname) {
     return getShortName(fullname, true);
   }
 
   public String getShortName(String fullname, boolean imported) {
 
+    if (mapRecordedNames != null && !mapRecordedNames.containsKey(fullname)) {
+      mapRecordedNames.put(fullname, imported);
+    }
+
     ClassesProcessor clproc = DecompilerContext.getClassProcessor();
     ClassNode node = clproc.getMapRootClasses().get(fullname.replace('.', '/'));
 
@@ -28,6 +28,14 @@ public class VarNamesCollector {
     usedNames.addAll(setNames);
   }
 
+  public VarNamesCollector(VarNamesCollector collector) {
+    usedNames.addAll(collector.usedNames);
+  }
+
+  public void addNames(VarNamesCollector collector) {
+    usedNames.addAll(collector.usedNames);
+  }
+
   public void addName(String value) {
     usedNames.add(value);
   }
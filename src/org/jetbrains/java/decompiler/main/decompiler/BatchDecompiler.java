@@ -0,0 +1,345 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.main.decompiler;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.java.decompiler.main.ClassesProcessor;
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Decompiles whole archives or directories into a source archive or directory. Classes are decompiled
+ * on a pool of worker threads while a dedicated writer thread copies the resources of the sources
+ * and compresses the decompiled classes.
+ */
+public class BatchDecompiler implements Closeable {
+
+  private static final Result END = new Result(null, null);
+
+  private final FileStructContext context;
+  private final Fernflower fernflower;
+
+  public BatchDecompiler(Map<String, Object> options, IFernflowerLogger logger) {
+    this(new FileStructContext(), options, logger);
+  }
+
+  public BatchDecompiler(FileStructContext context, Map<String, Object> options, IFernflowerLogger logger) {
+    this.context = context;
+    this.fernflower = new Fernflower(context, options, logger);
+  }
+
+  public void addSource(Path path) throws IOException {
+    context.scan(path, true);
+  }
+
+  public void addLibrary(Path path) throws IOException {
+    context.scan(path, false);
+  }
+
+  /**
+   * Decompiles all sources to the given destination, which is written as an archive if its name ends with
+   * {@code .jar} or {@code .zip}, and as a directory otherwise.
+   */
+  public void decompile(Path destination) throws IOException, InterruptedException {
+    String name = destination.getFileName().toString();
+    try (ResultSink sink = name.endsWith(".jar") || name.endsWith(".zip") ? new ZipSink(destination) : new DirectorySink(destination)) {
+      decompile(sink);
+    }
+  }
+
+  private void decompile(ResultSink sink) throws IOException, InterruptedException {
+    fernflower.decompileContext();
+
+    // bounded, so that the workers wait for the writer instead of piling up decompiled classes
+    BlockingQueue<Result> queue = new ArrayBlockingQueue<Result>(Runtime.getRuntime().availableProcessors() * 2);
+
+    ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+      .setNameFormat("Java decompiler writer")
+      .setDaemon(true)
+      .build());
+    // set by the writer, so that the remaining classes aren't decompiled after the results can no longer be written
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    try {
+      Future<?> written = writer.submit(() -> {
+        write(sink, queue, failure);
+        return null;
+      });
+
+      try {
+        fernflower.processClasses(cl -> {
+          if (failure.get() != null) {
+            throw new CancellationException("Failed to write the decompiled classes");
+          }
+
+          String entryName = fernflower.getClassEntryName(cl, cl.source);
+          if (entryName == null) {
+            return;
+          }
+
+          // encoded by the workers, the writer only copies the bytes to the destination
+          ByteArrayOutputStream content = new ByteArrayOutputStream(ClassesProcessor.AVERAGE_CLASS_SIZE);
+          try {
+            Writer out = new OutputStreamWriter(content, StandardCharsets.UTF_8);
+            if (fernflower.writeClassContent(cl, out)) {
+              out.flush();
+              queue.put(new Result(entryName, content));
+            }
+          }
+          catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+          catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+          }
+        });
+      }
+      catch (RuntimeException ex) {
+        if (failure.get() == null) {
+          throw ex;
+        }
+        // cancelled because of the writer's error, which is reported below
+      }
+      finally {
+        queue.put(END);
+      }
+
+      try {
+        written.get();
+      }
+      catch (ExecutionException ex) {
+        Throwables.propagateIfInstanceOf(ex.getCause(), IOException.class);
+        throw Throwables.propagate(ex.getCause());
+      }
+    }
+    finally {
+      writer.shutdownNow();
+    }
+  }
+
+  private void write(ResultSink sink, BlockingQueue<Result> queue, AtomicReference<Throwable> failure)
+    throws IOException, InterruptedException {
+    // keep taking results after an error, the workers would be blocked otherwise
+    for (Result result = queue.take(); result != END; result = queue.take()) {
+      if (failure.get() == null) {
+        try {
+          sink.write(result.entryName, result.content);
+        }
+        catch (Throwable t) {
+          failure.set(t);
+        }
+      }
+    }
+
+    // the resources are copied last, so that the workers don't have to wait for them
+    if (failure.get() == null) {
+      try {
+        for (String resource : context.getResources()) {
+          if (!resource.endsWith(".class")) {
+            try (InputStream in = context.openResource(resource)) {
+              sink.copy(resource, in);
+            }
+          }
+        }
+      }
+      catch (Throwable t) {
+        failure.set(t);
+      }
+    }
+
+    Throwable error = failure.get();
+    if (error != null) {
+      Throwables.propagateIfInstanceOf(error, IOException.class);
+      throw Throwables.propagate(error);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    fernflower.close();
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.out.println("Usage: java -cp fernflower.jar " + BatchDecompiler.class.getName() +
+                         " [-<option>=<value>]* [-e=<library>]* [<source>]+ <destination>\n" +
+                         "Example: java -cp fernflower.jar " + BatchDecompiler.class.getName() +
+                         " -dgs=true c:\\my\\source\\ c:\\my.jar d:\\decompiled.jar");
+      return;
+    }
+
+    Map<String, Object> options = new HashMap<String, Object>();
+    List<Path> libraries = new ArrayList<Path>();
+    List<Path> sources = new ArrayList<Path>();
+
+    boolean isOption = true;
+    for (int i = 0; i < args.length - 1; ++i) { // last parameter - destination
+      String arg = args[i];
+
+      if (isOption && arg.length() > 5 && arg.charAt(0) == '-' && arg.charAt(4) == '=') {
+        String value = arg.substring(5);
+        if ("true".equalsIgnoreCase(value)) {
+          value = "1";
+        }
+        else if ("false".equalsIgnoreCase(value)) {
+          value = "0";
+        }
+
+        options.put(arg.substring(1, 4), value);
+      }
+      else {
+        isOption = false;
+
+        if (arg.startsWith("-e=")) {
+          libraries.add(Paths.get(arg.substring(3)));
+        }
+        else {
+          sources.add(Paths.get(arg));
+        }
+      }
+    }
+
+    if (sources.isEmpty()) {
+      System.out.println("error: no sources given");
+      return;
+    }
+
+    try (BatchDecompiler decompiler = new BatchDecompiler(options, new PrintStreamLogger(System.out))) {
+      for (Path library : libraries) {
+        decompiler.addLibrary(library);
+      }
+      for (Path source : sources) {
+        decompiler.addSource(source);
+      }
+
+      decompiler.decompile(Paths.get(args[args.length - 1]));
+    }
+  }
+
+  private static class Result {
+    private final String entryName;
+    private final ByteArrayOutputStream content;
+
+    public Result(String entryName, ByteArrayOutputStream content) {
+      this.entryName = entryName;
+      this.content = content;
+    }
+  }
+
+  private interface ResultSink extends Closeable {
+    void write(String entryName, ByteArrayOutputStream content) throws IOException;
+
+    void copy(String entryName, InputStream in) throws IOException;
+  }
+
+  private static class ZipSink implements ResultSink {
+    private final ZipOutputStream out;
+
+    public ZipSink(Path file) throws IOException {
+      Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+
+    @Override
+    public void write(String entryName, ByteArrayOutputStream content) throws IOException {
+      out.putNextEntry(new ZipEntry(entryName));
+      content.writeTo(out);
+      out.closeEntry();
+    }
+
+    @Override
+    public void copy(String entryName, InputStream in) throws IOException {
+      out.putNextEntry(new ZipEntry(entryName));
+      ByteStreams.copy(in, out);
+      out.closeEntry();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  private static class DirectorySink implements ResultSink {
+    private final Path root;
+
+    public DirectorySink(Path root) throws IOException {
+      this.root = root;
+      Files.createDirectories(root);
+    }
+
+    @Override
+    public void write(String entryName, ByteArrayOutputStream content) throws IOException {
+      try (OutputStream out = Files.newOutputStream(resolve(entryName))) {
+        content.writeTo(out);
+      }
+    }
+
+    @Override
+    public void copy(String entryName, InputStream in) throws IOException {
+      try (OutputStream out = Files.newOutputStream(resolve(entryName))) {
+        ByteStreams.copy(in, out);
+      }
+    }
+
+    private Path resolve(String entryName) throws IOException {
+      Path file = root.resolve(entryName).normalize();
+      if (!file.startsWith(root.normalize())) {
+        throw new IOException("Entry " + entryName + " is outside of the destination directory");
+      }
+      Files.createDirectories(file.getParent());
+      return file;
+    }
+
+    @Override
+    public void close() { }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.main.decompiler;
+
+import org.jetbrains.java.decompiler.main.DecompilationCache;
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.MethodMemoCache;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+import org.jetbrains.java.decompiler.struct.StructClass;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Long-lived decompiler for services that decompile a few classes at a time against the same libraries.
+ * The libraries are scanned once and their classes are parsed on first use and kept for all requests,
+ * while each {@link Request} scans its own classes into a separate context that is discarded afterwards.
+ * <p>
+ * Libraries should be added before the first request is opened. Requests may be processed concurrently,
+ * each of them on a single thread.
+ */
+public class DecompilerSession implements Closeable {
+
+  private final FileStructContext libraries;
+  private final Map<String, Object> options;
+  private final IFernflowerLogger logger;
+
+  private volatile DecompilationCache cache;
+  private volatile MethodMemoCache methodCache;
+
+  public DecompilerSession(Map<String, Object> options, IFernflowerLogger logger) {
+    this(new FileStructContext(), options, logger);
+  }
+
+  public DecompilerSession(FileStructContext libraries, Map<String, Object> options, IFernflowerLogger logger) {
+    if ("1".equals(options.get(IFernflowerPreferences.RENAME_ENTITIES))) {
+      // renaming rewrites the classes it is run on, including the shared libraries
+      throw new IllegalArgumentException("Renaming is not supported by decompiler sessions");
+    }
+
+    this.libraries = libraries;
+    this.options = new HashMap<String, Object>(options);
+    this.logger = logger;
+  }
+
+  public void addLibrary(Path path) throws IOException {
+    // classes may be parsed while scanning, which reads the options
+    DecompilerContext previousContext = DecompilerContext.getCurrentContext();
+    DecompilerContext.initContext(options, logger);
+    try {
+      libraries.scan(path, false);
+    }
+    finally {
+      DecompilerContext.setCurrentContext(previousContext);
+    }
+  }
+
+  public FileStructContext getLibraries() {
+    return libraries;
+  }
+
+  /**
+   * Sets a persistent cache that is shared by all requests, {@code null} disables caching.
+   */
+  public void setCache(DecompilationCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Sets a cache of decompiled method bodies that is shared by all requests, {@code null} disables it.
+   */
+  public void setMethodCache(MethodMemoCache methodCache) {
+    this.methodCache = methodCache;
+  }
+
+  /**
+   * Opens a request on the current thread, which has to be closed on the same thread.
+   */
+  public Request openRequest() {
+    return new Request();
+  }
+
+  @Override
+  public void close() throws IOException {
+    libraries.close();
+  }
+
+  public class Request implements Closeable {
+    private final FileStructContext context = new FileStructContext(libraries);
+    private final Fernflower fernflower;
+    private boolean decompiling;
+
+    private Request() {
+      fernflower = new Fernflower(context, options, logger);
+      fernflower.setCache(cache);
+      fernflower.setMethodCache(methodCache);
+    }
+
+    /**
+     * Adds the classes to be decompiled. Classes with the same name as a library class replace it for this request.
+     */
+    public void addSource(Path path) throws IOException {
+      if (decompiling) {
+        throw new IllegalStateException("Sources must be added before decompiling");
+      }
+      context.scan(path, true);
+    }
+
+    public FileStructContext getContext() {
+      return context;
+    }
+
+    /**
+     * Returns the decompiler of the request. The class tree is built on the first call, so all sources
+     * have to be added before.
+     */
+    public Fernflower getFernflower() {
+      if (!decompiling) {
+        fernflower.decompileContext();
+        decompiling = true;
+      }
+      return fernflower;
+    }
+
+    /**
+     * Returns the source of a class added to the request, or {@code null} if it couldn't be decompiled.
+     */
+    public String getClassContent(String className) {
+      StructClass cl = context.getClass(className);
+      if (cl == null || !cl.isOwn()) {
+        throw new IllegalArgumentException("Class " + className + " has not been added to the request");
+      }
+      return getFernflower().getClassContent(cl);
+    }
+
+    /**
+     * Decompiles all classes added to the request, see {@link Fernflower#decompileClasses(BiConsumer)}.
+     */
+    public void decompileClasses(BiConsumer<StructClass, String> consumer) throws InterruptedException {
+      getFernflower().decompileClasses(consumer);
+    }
+
+    /**
+     * Releases the classes of the request, the libraries are kept for the next requests.
+     */
+    @Override
+    public void close() throws IOException {
+      fernflower.close();
+    }
+  }
+}
@@ -23,17 +23,18 @@ import java.io.PrintStream;
 public class PrintStreamLogger extends IFernflowerLogger {
 
   private final PrintStream stream;
-  private int indent;
+
+  // per thread, classes and methods may be processed in parallel
+  private final ThreadLocal<Integer> indent = ThreadLocal.withInitial(() -> 0);
 
   public PrintStreamLogger(PrintStream printStream) {
     stream = printStream;
-    indent = 0;
   }
 
   @Override
   public void writeMessage(String message, Severity severity) {
     if (accepts(severity)) {
-      stream.println(severity.prefix + InterpreterUtil.getIndentString(indent) + message);
+      stream.println(severity.prefix + InterpreterUtil.getIndentString(indent.get()) + message);
     }
   }
 
@@ -49,14 +50,14 @@ public class PrintStreamLogger extends IFernflowerLogger {
   public void startReadingClass(String className) {
     if (accepts(Severity.INFO)) {
       writeMessage("Decompiling class " + className, Severity.INFO);
-      ++indent;
+      indent.set(indent.get() + 1);
     }
   }
 
   @Override
   public void endReadingClass() {
     if (accepts(Severity.INFO)) {
-      --indent;
+      indent.set(indent.get() - 1);
       writeMessage("... done", Severity.INFO);
     }
   }
@@ -65,14 +66,14 @@ public class PrintStreamLogger extends IFernflowerLogger {
   public void startClass(String className) {
     if (accepts(Severity.INFO)) {
       writeMessage("Processing class " + className, Severity.TRACE);
-      ++indent;
+      indent.set(indent.get() + 1);
     }
   }
 
   @Override
   public void endClass() {
     if (accepts(Severity.INFO)) {
-      --indent;
+      indent.set(indent.get() - 1);
       writeMessage("... proceeded", Severity.TRACE);
     }
   }
@@ -81,13 +82,13 @@ public class PrintStreamLogger extends IFernflowerLogger {
   public void startMethod(String methodName) {
     if (accepts(Severity.INFO)) {
       writeMessage("Processing method " + methodName, Severity.TRACE);
-      ++indent;
+      indent.set(indent.get() + 1);
     }
   }
 
   public void endMethod() {
     if (accepts(Severity.INFO)) {
-      --indent;
+      indent.set(indent.get() - 1);
       writeMessage("... proceeded", Severity.TRACE);
     }
   }
@@ -96,14 +97,14 @@ public class PrintStreamLogger extends IFernflowerLogger {
   public void startWriteClass(String className) {
     if (accepts(Severity.INFO)) {
       writeMessage("Writing class " + className, Severity.TRACE);
-      ++indent;
+      indent.set(indent.get() + 1);
     }
   }
 
   @Override
   public void endWriteClass() {
     if (accepts(Severity.INFO)) {
-      --indent;
+      indent.set(indent.get() - 1);
       writeMessage("... written", Severity.TRACE);
     }
   }
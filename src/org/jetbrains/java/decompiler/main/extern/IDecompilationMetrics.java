@@ -0,0 +1,35 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.main.extern;
+
+/**
+ * Receives measurements of the phases of the method processing pipeline. Implementations are called concurrently
+ * when classes or methods are decompiled in parallel.
+ */
+public interface IDecompilationMetrics {
+
+  /**
+   * Whether the bytes allocated by a phase should be measured, which is more expensive than measuring time.
+   */
+  boolean isTrackingAllocations();
+
+  /**
+   * @param allocatedBytes bytes allocated by the processing thread during the phase, -1 if not measured
+   */
+  void recordPhase(String className, String method, String phase, long nanos, long allocatedBytes);
+
+  void recordIterations(String className, String method, String loop, int iterations);
+}
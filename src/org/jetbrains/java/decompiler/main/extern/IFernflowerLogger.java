@@ -27,6 +27,10 @@ public abstract class IFernflowerLogger {
     }
   }
 
+  public enum MethodResult {
+    SUCCESS, FAILURE, TIMEOUT, LIMIT_EXCEEDED
+  }
+
   private Severity severity = Severity.INFO;
 
   public boolean accepts(Severity severity) {
@@ -56,4 +60,26 @@ public abstract class IFernflowerLogger {
   public void startWriteClass(String className) { }
 
   public void endWriteClass() { }
+
+  /**
+   * Whether the structured events below are reported to this logger. Their data is only collected if this
+   * returns {@code true}, so loggers which don't override it pay nothing for them.
+   */
+  public boolean acceptsEvents() {
+    return false;
+  }
+
+  /**
+   * @param byteSize size of the class files of the class and all of its nested classes
+   */
+  public void classStarted(String className, long byteSize) { }
+
+  public void classFinished(String className, long byteSize, long nanos, boolean success) { }
+
+  /**
+   * @param instructions number of bytecode instructions, -1 if the code was not read
+   * @param statements number of statements of the decompiled body, -1 if it was not decompiled in this run
+   */
+  public void methodFinished(String className, String methodName, String descriptor, int instructions, int statements,
+                             long nanos, MethodResult result) { }
 }
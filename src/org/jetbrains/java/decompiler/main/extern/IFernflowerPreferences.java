@@ -48,6 +48,10 @@ public interface IFernflowerPreferences {
 
   String LOG_LEVEL = "log";
   String MAX_PROCESSING_METHOD = "mpm";
+  String MAX_PROCESSING_NODES = "mpn";
+  String THREADS = "thr";
+  String PARALLEL_METHODS = "pme";
+  String ON_DEMAND_CLASSES = "odc";
   String RENAME_ENTITIES = "ren";
   String USER_RENAMER_CLASS = "urc";
   String NEW_LINE_SEPARATOR = "nls";
@@ -91,6 +95,10 @@ public interface IFernflowerPreferences {
 
     put(LOG_LEVEL, IFernflowerLogger.Severity.INFO.name());
     put(MAX_PROCESSING_METHOD, "0");
+    put(MAX_PROCESSING_NODES, "0");
+    put(THREADS, "0");
+    put(PARALLEL_METHODS, "0");
+    put(ON_DEMAND_CLASSES, "0");
     put(RENAME_ENTITIES, "0");
     put(NEW_LINE_SEPARATOR, (InterpreterUtil.IS_WINDOWS ? "0" : "1"));
     put(INDENT_STRING, "   ");
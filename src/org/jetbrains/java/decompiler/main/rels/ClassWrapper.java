@@ -17,12 +17,15 @@ package org.jetbrains.java.decompiler.main.rels;
 
 import org.jetbrains.java.decompiler.code.CodeConstants;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.MethodMemoCache;
 import org.jetbrains.java.decompiler.main.collectors.CounterContainer;
+import org.jetbrains.java.decompiler.main.collectors.ImportCollector;
 import org.jetbrains.java.decompiler.main.collectors.VarNamesCollector;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.Exprent;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.RootStatement;
+import org.jetbrains.java.decompiler.modules.decompiler.stats.Statement;
 import org.jetbrains.java.decompiler.modules.decompiler.vars.VarProcessor;
 import org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionPair;
 import org.jetbrains.java.decompiler.struct.StructClass;
@@ -34,14 +37,22 @@ import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
 import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
+import com.google.common.base.Throwables;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class ClassWrapper {
 
   private final StructClass classStruct;
-  private final Set<String> hiddenMembers = new HashSet<String>();
+  private final Set<String> hiddenMembers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
   private final VBStyleCollection<Exprent, String> staticFieldInitializers = new VBStyleCollection<Exprent, String>();
   private final VBStyleCollection<Exprent, String> dynamicFieldInitializers = new VBStyleCollection<Exprent, String>();
   private final VBStyleCollection<MethodWrapper, String> methods = new VBStyleCollection<MethodWrapper, String>();
@@ -55,145 +66,271 @@ public class ClassWrapper {
     DecompilerContext.setProperty(DecompilerContext.CURRENT_CLASS_WRAPPER, this);
     DecompilerContext.getLogger().startClass(classStruct.qualifiedName);
 
-    // collect field names
-    Set<String> setFieldNames = new HashSet<String>();
-    for (StructField fd : classStruct.getFields()) {
-      setFieldNames.add(fd.getName());
+    Set<String> setFieldNames = getFieldNames();
+
+    if (DecompilerContext.getOption(IFernflowerPreferences.PARALLEL_METHODS) && classStruct.getMethods().size() > 1) {
+      processMethodsParallel(setFieldNames);
     }
+    else {
+      for (StructMethod mt : classStruct.getMethods()) {
+        MethodWrapper methodWrapper = processMethod(mt, setFieldNames, true);
+        methods.addWithKey(methodWrapper, InterpreterUtil.makeUniqueKey(mt.getName(), mt.getDescriptor()));
+      }
+    }
+
+    DecompilerContext.getLogger().endClass();
+  }
+
+  private void processMethodsParallel(Set<String> setFieldNames) throws IOException {
+    ImportCollector importCollector = DecompilerContext.getImportCollector();
+
+    List<StructMethod> lstMethods = classStruct.getMethods();
+    List<ImportCollector> lstImports = new ArrayList<ImportCollector>(lstMethods.size());
+    List<Future<MethodWrapper>> lstFutures = new ArrayList<Future<MethodWrapper>>(lstMethods.size());
+
+    try {
+      for (StructMethod mt : lstMethods) {
+        DecompilerContext context = DecompilerContext.forkContext();
+        ImportCollector methodImports = importCollector == null ? null : importCollector.fork();
+        lstImports.add(methodImports);
+
+        lstFutures.add(MethodProcessorRunnable.submit(() -> {
+          DecompilerContext previousContext = DecompilerContext.getCurrentContext();
+          DecompilerContext.setCurrentContext(context);
+          try {
+            DecompilerContext.setImportCollector(methodImports);
+            return processMethod(mt, setFieldNames, true);
+          }
+          finally {
+            DecompilerContext.setCurrentContext(previousContext);
+          }
+        }));
+      }
 
+      // collect in declaration order, so that imports are registered exactly as in a sequential run
+      for (int i = 0; i < lstMethods.size(); i++) {
+        StructMethod mt = lstMethods.get(i);
+        MethodWrapper methodWrapper = lstFutures.get(i).get();
+        if (importCollector != null) {
+          importCollector.merge(lstImports.get(i));
+        }
+        methods.addWithKey(methodWrapper, InterpreterUtil.makeUniqueKey(mt.getName(), mt.getDescriptor()));
+      }
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ex);
+    }
+    catch (ExecutionException ex) {
+      Throwables.propagateIfInstanceOf(ex.getCause(), IOException.class);
+      throw Throwables.propagate(ex.getCause());
+    }
+    finally {
+      for (Future<MethodWrapper> future : lstFutures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private MethodWrapper processMethod(StructMethod mt, Set<String> setFieldNames, boolean memoize) {
     int maxSec = Integer.parseInt(DecompilerContext.getProperty(IFernflowerPreferences.MAX_PROCESSING_METHOD).toString());
     boolean testMode = DecompilerContext.getOption(IFernflowerPreferences.UNIT_TEST_MODE);
 
-    for (StructMethod mt : classStruct.getMethods()) {
-      DecompilerContext.getLogger().startMethod(mt.getName() + " " + mt.getDescriptor());
+    IFernflowerLogger logger = DecompilerContext.getLogger();
+    boolean events = logger.acceptsEvents();
+    long start = events ? System.nanoTime() : 0;
+    IFernflowerLogger.MethodResult result = IFernflowerLogger.MethodResult.SUCCESS;
 
-      VarNamesCollector vc = new VarNamesCollector();
-      DecompilerContext.setVarNamesCollector(vc);
+    logger.startMethod(mt.getName() + " " + mt.getDescriptor());
 
-      CounterContainer counter = new CounterContainer();
-      DecompilerContext.setCounterContainer(counter);
+    VarNamesCollector vc = new VarNamesCollector();
+    DecompilerContext.setVarNamesCollector(vc);
 
-      DecompilerContext.setProperty(DecompilerContext.CURRENT_METHOD, mt);
-      DecompilerContext.setProperty(DecompilerContext.CURRENT_METHOD_DESCRIPTOR, MethodDescriptor.parseDescriptor(mt.getDescriptor()));
+    CounterContainer counter = new CounterContainer();
+    DecompilerContext.setCounterContainer(counter);
 
-      VarProcessor varProc = new VarProcessor();
-      DecompilerContext.setProperty(DecompilerContext.CURRENT_VAR_PROCESSOR, varProc);
+    DecompilerContext.setProperty(DecompilerContext.CURRENT_METHOD, mt);
+    DecompilerContext.setProperty(DecompilerContext.CURRENT_METHOD_DESCRIPTOR, MethodDescriptor.parseDescriptor(mt.getDescriptor()));
 
-      RootStatement root = null;
+    VarProcessor varProc = createVarProcessor(mt);
 
-      // if debug information present and should be used
-      if (DecompilerContext.getOption(IFernflowerPreferences.USE_DEBUG_VAR_NAMES)) {
-        StructLocalVariableTableAttribute attr = (StructLocalVariableTableAttribute)mt.getAttributes().getWithKey(
-          StructGeneralAttribute.ATTRIBUTE_LOCAL_VARIABLE_TABLE);
+    RootStatement root = null;
 
-        if (attr != null) {
-          varProc.setLVT(attr.getLVT());
-        }
-      }
+    boolean isError = false;
 
-      boolean isError = false;
+    MethodMemoCache methodCache = memoize ? DecompilerContext.getMethodCache() : null;
+    ImportCollector importCollector = DecompilerContext.getImportCollector();
+    String memoKey = null;
+    MethodMemoCache.Entry memo = null;
+    ImportCollector processingImports = null;
 
-      try {
-        if (mt.containsCode()) {
-          if (maxSec == 0 || testMode) {
-            root = MethodProcessorRunnable.codeToJava(mt, varProc);
-          }
-          else {
-            MethodProcessorRunnable mtProc = new MethodProcessorRunnable(mt, varProc, DecompilerContext.getCurrentContext());
-
-            Thread mtThread = new Thread(mtProc, "Java decompiler");
-            long stopAt = System.currentTimeMillis() + maxSec * 1000;
-
-            mtThread.start();
-
-            while (!mtProc.isFinished()) {
-              try {
-                synchronized (mtProc.lock) {
-                  mtProc.lock.wait(200);
-                }
-              }
-              catch (InterruptedException e) {
-                killThread(mtThread);
-                throw e;
-              }
-
-              if (System.currentTimeMillis() >= stopAt) {
-                String message = "Processing time limit exceeded for method " + mt.getName() + ", execution interrupted.";
-                DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.ERROR);
-                killThread(mtThread);
-                isError = true;
-                break;
-              }
-            }
+    try {
+      if (methodCache != null && importCollector != null) {
+        memoKey = methodCache.getKey(mt, setFieldNames);
+        memo = memoKey == null ? null : methodCache.get(memoKey);
+      }
 
-            if (!isError) {
-              root = mtProc.getResult();
-            }
-          }
+      if (memo != null) {
+        memo.registerProcessingNames(importCollector);
+        mt.releaseResources(); // only expanded for the key
+      }
+      else if (mt.containsCode()) {
+        if (memoKey != null) {
+          processingImports = importCollector.fork();
+          DecompilerContext.setImportCollector(processingImports);
+        }
+
+        if (maxSec == 0 || testMode) {
+          root = MethodProcessorRunnable.codeToJava(mt, varProc);
         }
         else {
-          boolean thisVar = !mt.hasModifier(CodeConstants.ACC_STATIC);
-          MethodDescriptor md = MethodDescriptor.parseDescriptor(mt.getDescriptor());
+          MethodProcessorRunnable mtProc = new MethodProcessorRunnable(mt, varProc, DecompilerContext.forkContext(), maxSec);
+          root = mtProc.process();
+        }
+      }
+      else {
+        boolean thisVar = !mt.hasModifier(CodeConstants.ACC_STATIC);
+        MethodDescriptor md = MethodDescriptor.parseDescriptor(mt.getDescriptor());
+
+        int paramCount = 0;
+        if (thisVar) {
+          varProc.getThisVars().put(new VarVersionPair(0, 0), classStruct.qualifiedName);
+          paramCount = 1;
+        }
+        paramCount += md.params.length;
+
+        int varIndex = 0;
+        for (int i = 0; i < paramCount; i++) {
+          varProc.setVarName(new VarVersionPair(varIndex, 0), vc.getFreeName(varIndex));
 
-          int paramCount = 0;
           if (thisVar) {
-            varProc.getThisVars().put(new VarVersionPair(0, 0), classStruct.qualifiedName);
-            paramCount = 1;
-          }
-          paramCount += md.params.length;
-
-          int varIndex = 0;
-          for (int i = 0; i < paramCount; i++) {
-            varProc.setVarName(new VarVersionPair(varIndex, 0), vc.getFreeName(varIndex));
-
-            if (thisVar) {
-              if (i == 0) {
-                varIndex++;
-              }
-              else {
-                varIndex += md.params[i - 1].stackSize;
-              }
+            if (i == 0) {
+              varIndex++;
             }
             else {
-              varIndex += md.params[i].stackSize;
+              varIndex += md.params[i - 1].stackSize;
             }
           }
+          else {
+            varIndex += md.params[i].stackSize;
+          }
         }
       }
-      catch (Throwable ex) {
-        DecompilerContext.getLogger().writeMessage("Method " + mt.getName() + " " + mt.getDescriptor() + " couldn't be decompiled.", ex);
-        isError = true;
+    }
+    catch (MethodProcessorRunnable.TimeLimitExceededException ex) {
+      String message = "Processing time limit exceeded for method " + mt.getName() + ", execution interrupted.";
+      logger.writeMessage(message, IFernflowerLogger.Severity.ERROR);
+      isError = true;
+      result = IFernflowerLogger.MethodResult.TIMEOUT;
+      varProc = createVarProcessor(mt); // the old one may still be used by the abandoned processor
+    }
+    catch (MethodProcessorRunnable.WorkLimitExceededException ex) {
+      String message = "Method " + mt.getName() + " " + mt.getDescriptor() + " is too large to be decompiled (" + ex.getMessage() + ").";
+      logger.writeMessage(message, IFernflowerLogger.Severity.WARN);
+      isError = true;
+      result = IFernflowerLogger.MethodResult.LIMIT_EXCEEDED;
+    }
+    catch (Throwable ex) {
+      logger.writeMessage("Method " + mt.getName() + " " + mt.getDescriptor() + " couldn't be decompiled.", ex);
+      isError = true;
+      result = IFernflowerLogger.MethodResult.FAILURE;
+    }
+    finally {
+      if (processingImports != null) {
+        DecompilerContext.setImportCollector(importCollector);
+        importCollector.merge(processingImports);
       }
+    }
 
-      MethodWrapper methodWrapper = new MethodWrapper(root, varProc, mt, counter);
-      methodWrapper.decompiledWithErrors = isError;
+    MethodWrapper methodWrapper = new MethodWrapper(root, varProc, mt, counter);
+    methodWrapper.decompiledWithErrors = isError;
 
-      methods.addWithKey(methodWrapper, InterpreterUtil.makeUniqueKey(mt.getName(), mt.getDescriptor()));
+    // rename vars so that no one has the same name as a field
+    varProc.refreshVarNames(new VarNamesCollector(setFieldNames));
 
-      // rename vars so that no one has the same name as a field
-      varProc.refreshVarNames(new VarNamesCollector(setFieldNames));
+    // if debug information present and should be used
+    if (DecompilerContext.getOption(IFernflowerPreferences.USE_DEBUG_VAR_NAMES)) {
+      StructLocalVariableTableAttribute attr = (StructLocalVariableTableAttribute)mt.getAttributes().getWithKey(
+        StructGeneralAttribute.ATTRIBUTE_LOCAL_VARIABLE_TABLE);
 
-      // if debug information present and should be used
-      if (DecompilerContext.getOption(IFernflowerPreferences.USE_DEBUG_VAR_NAMES)) {
-        StructLocalVariableTableAttribute attr = (StructLocalVariableTableAttribute)mt.getAttributes().getWithKey(
-          StructGeneralAttribute.ATTRIBUTE_LOCAL_VARIABLE_TABLE);
+      if (attr != null) {
+        varProc.setDebugVarNames(attr.getMapVarNames());
+      }
+    }
 
-        if (attr != null) {
-          varProc.setDebugVarNames(attr.getMapVarNames());
-        }
+    if (memo != null) {
+      memo.setParameterNames(varProc);
+      methodWrapper.memo = memo;
+    }
+    else if (processingImports != null && root != null && !isError) {
+      methodWrapper.memoKey = memoKey;
+      methodWrapper.memoProcessingNames = processingImports.getRecordedNames();
+    }
+
+    //MethodProcessorRunnable.printMethod(root, mt.getClassStruct().qualifiedName+"."+mt.getName()+mt.getDescriptor(),varProc);
+
+    logger.endMethod();
+
+    if (events) {
+      logger.methodFinished(classStruct.qualifiedName, mt.getName(), mt.getDescriptor(), mt.getInstructionCount(),
+                            root == null ? -1 : countStatements(root), System.nanoTime() - start, result);
+    }
+
+    return methodWrapper;
+  }
+
+  private static VarProcessor createVarProcessor(StructMethod mt) {
+    VarProcessor varProc = new VarProcessor();
+    DecompilerContext.setProperty(DecompilerContext.CURRENT_VAR_PROCESSOR, varProc);
+
+    // if debug information present and should be used
+    if (DecompilerContext.getOption(IFernflowerPreferences.USE_DEBUG_VAR_NAMES)) {
+      StructLocalVariableTableAttribute attr = (StructLocalVariableTableAttribute)mt.getAttributes().getWithKey(
+        StructGeneralAttribute.ATTRIBUTE_LOCAL_VARIABLE_TABLE);
+
+      if (attr != null) {
+        varProc.setLVT(attr.getLVT());
       }
+    }
 
-      //MethodProcessorRunnable.printMethod(root, mt.getClassStruct().qualifiedName+"."+mt.getName()+mt.getDescriptor(),varProc);
+    return varProc;
+  }
 
-      DecompilerContext.getLogger().endMethod();
+  private static int countStatements(Statement stat) {
+    int count = 1;
+    for (Statement st : stat.getStats()) {
+      count += countStatements(st);
     }
+    return count;
+  }
 
-    DecompilerContext.getLogger().endClass();
+  private Set<String> getFieldNames() {
+    Set<String> setFieldNames = new HashSet<String>();
+    for (StructField fd : classStruct.getFields()) {
+      setFieldNames.add(fd.getName());
+    }
+    return setFieldNames;
   }
 
-  @SuppressWarnings("deprecation")
-  private static void killThread(Thread thread) {
-    thread.stop();
+  /**
+   * Decompiles a method whose memoized body cannot be used in this class after all and replaces its wrapper.
+   */
+  public MethodWrapper reprocessMethod(StructMethod mt) {
+    DecompilerContext previousContext = DecompilerContext.getCurrentContext();
+    ImportCollector importCollector = DecompilerContext.getImportCollector();
+    DecompilerContext.setCurrentContext(DecompilerContext.forkContext());
+    try {
+      DecompilerContext.setImportCollector(importCollector);
+      DecompilerContext.setProperty(DecompilerContext.CURRENT_CLASS, classStruct);
+      DecompilerContext.setProperty(DecompilerContext.CURRENT_CLASS_WRAPPER, this);
+
+      MethodWrapper methodWrapper = processMethod(mt, getFieldNames(), false);
+      methods.putWithKey(methodWrapper, InterpreterUtil.makeUniqueKey(mt.getName(), mt.getDescriptor()));
+      return methodWrapper;
+    }
+    finally {
+      DecompilerContext.setCurrentContext(previousContext);
+    }
   }
 
   public MethodWrapper getMethodWrapper(String name, String descriptor) {
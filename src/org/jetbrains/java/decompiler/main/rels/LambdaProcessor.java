@@ -40,6 +40,12 @@ public class LambdaProcessor {
   @SuppressWarnings("SpellCheckingInspection") private static final String JAVAC_LAMBDA_ALT_METHOD = "altMetafactory";
 
   public void processClass(ClassNode node) throws IOException {
+    for (ClassNode child : node.nested) {
+      if (child.type == ClassNode.CLASS_LAMBDA) {
+        return; // already processed when the class was decompiled before
+      }
+    }
+
     for (ClassNode child : node.nested) {
       processClass(child);
     }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.main.rels;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.extern.IDecompilationMetrics;
+import org.jetbrains.java.decompiler.struct.StructMethod;
+import org.jetbrains.java.decompiler.util.InterpreterUtil;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures consecutive phases of processing a method: each call to {@link #end(String)} reports the time since
+ * the previous one. Does nothing if no metrics are set in the decompiler context.
+ */
+class MethodPhaseTimer {
+
+  private static final MethodPhaseTimer DISABLED = new MethodPhaseTimer(null, null, null);
+
+  private final IDecompilationMetrics metrics;
+  private final String className;
+  private final String method;
+  private final com.sun.management.ThreadMXBean threads;
+  private long start;
+  private long startAllocated;
+
+  private MethodPhaseTimer(IDecompilationMetrics metrics, String className, String method) {
+    this.metrics = metrics;
+    this.className = className;
+    this.method = method;
+    this.threads = metrics != null && metrics.isTrackingAllocations() ? AllocationHolder.THREADS : null;
+    restart();
+  }
+
+  public static MethodPhaseTimer start(StructMethod mt) {
+    IDecompilationMetrics metrics = DecompilerContext.getMetrics();
+    if (metrics == null) {
+      return DISABLED;
+    }
+    return new MethodPhaseTimer(metrics, mt.getClassStruct().qualifiedName, InterpreterUtil.makeUniqueKey(mt.getName(), mt.getDescriptor()));
+  }
+
+  public void end(String phase) {
+    if (metrics != null) {
+      long nanos = System.nanoTime() - start;
+      long allocated = threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - startAllocated : -1;
+      metrics.recordPhase(className, method, phase, nanos, allocated);
+      restart();
+    }
+  }
+
+  public void iterations(String loop, int iterations) {
+    if (metrics != null) {
+      metrics.recordIterations(className, method, loop, iterations);
+    }
+  }
+
+  private void restart() {
+    if (threads != null) {
+      startAllocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    start = System.nanoTime();
+  }
+
+  private static class AllocationHolder {
+    private static final com.sun.management.ThreadMXBean THREADS = getThreadBean();
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean &&
+          ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+        return (com.sun.management.ThreadMXBean)bean;
+      }
+      return null;
+    }
+  }
+}
@@ -17,10 +17,13 @@ package org.jetbrains.java.decompiler.main.rels;
 
 import org.jetbrains.java.decompiler.code.CodeConstants;
 import org.jetbrains.java.decompiler.code.InstructionSequence;
+import org.jetbrains.java.decompiler.code.cfg.BasicBlock;
 import org.jetbrains.java.decompiler.code.cfg.ControlFlowGraph;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.collectors.BytecodeMappingTracer;
 import org.jetbrains.java.decompiler.main.collectors.CounterContainer;
+import org.jetbrains.java.decompiler.main.collectors.ImportCollector;
+import org.jetbrains.java.decompiler.main.collectors.VarNamesCollector;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.modules.code.DeadCodeHelper;
@@ -41,34 +44,54 @@ import org.jetbrains.java.decompiler.modules.decompiler.vars.VarProcessor;
 import org.jetbrains.java.decompiler.struct.StructClass;
 import org.jetbrains.java.decompiler.struct.StructMethod;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import java.io.IOException;
 import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class MethodProcessorRunnable implements Runnable {
 
-  private static RootStatement currentRoot;
-
-  private static VarProcessor vp;
-
-  public final Object lock = new Object();
+  private static final ThreadLocal<MethodProcessorRunnable> currentProcessor = new ThreadLocal<MethodProcessorRunnable>();
 
   private final StructMethod method;
   private final VarProcessor varProc;
   private final DecompilerContext parentContext;
+  private final long deadline;
+
+  // the task may keep running after its time limit, so it works on its own collectors, merged back on success only
+  private ImportCollector importCollector;
+  private VarNamesCollector varNamesCollector;
+  private CounterContainer counterContainer;
 
   private volatile RootStatement root;
   private volatile Throwable error;
   private volatile boolean finished = false;
+  private volatile boolean canceled = false;
+  private boolean abandoned = false; // guarded by this
 
-  public MethodProcessorRunnable(StructMethod method, VarProcessor varProc, DecompilerContext parentContext) {
+  public MethodProcessorRunnable(StructMethod method, VarProcessor varProc, DecompilerContext parentContext, int maxSec) {
     this.method = method;
     this.varProc = varProc;
     this.parentContext = parentContext;
+    this.deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(maxSec);
   }
 
   @Override
   public void run() {
+    // the executor may run the task on the submitting thread, so restore whatever was set before
+    DecompilerContext previousContext = DecompilerContext.getCurrentContext();
+    MethodProcessorRunnable previousProcessor = currentProcessor.get();
     DecompilerContext.setCurrentContext(parentContext);
+    DecompilerContext.setImportCollector(importCollector);
+    DecompilerContext.setVarNamesCollector(varNamesCollector);
+    DecompilerContext.setCounterContainer(counterContainer);
+    currentProcessor.set(this);
 
     error = null;
     root = null;
@@ -76,30 +99,124 @@ public class MethodProcessorRunnable implements Runnable {
     try {
       root = codeToJava(method, varProc);
     }
-    catch (ThreadDeath ex) {
-      throw ex;
-    }
     catch (Throwable ex) {
       error = ex;
     }
     finally {
-      DecompilerContext.setCurrentContext(null);
+      currentProcessor.set(previousProcessor);
+      DecompilerContext.setCurrentContext(previousContext);
+    }
+
+    synchronized (this) {
+      finished = true;
+      if (abandoned) {
+        ExecutorHolder.releaseAbandoned();
+      }
+    }
+  }
+
+  /**
+   * Runs the method processor on the shared executor and waits until it finishes or its time limit is exceeded.
+   * Timed out processors are canceled and stop at their next {@link #checkTimeLimit()}, the collectors of the
+   * current context are only updated if the processor finishes in time.
+   */
+  public RootStatement process() throws Throwable {
+    ImportCollector imports = DecompilerContext.getImportCollector();
+    VarNamesCollector varNames = DecompilerContext.getVarNamesCollector();
+    CounterContainer counters = DecompilerContext.getCounterContainer();
+
+    importCollector = imports == null ? null : imports.fork();
+    varNamesCollector = varNames == null ? new VarNamesCollector() : new VarNamesCollector(varNames);
+    counterContainer = new CounterContainer(counters);
+
+    Future<?> future = ExecutorHolder.EXECUTOR.submit(this);
+    try {
+      future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+    catch (TimeoutException ex) {
+      cancel(future);
+      throw new TimeLimitExceededException(method);
     }
+    catch (InterruptedException ex) {
+      cancel(future);
+      throw ex;
+    }
+
+    RootStatement result = getResult();
+
+    if (imports != null) {
+      imports.merge(importCollector);
+    }
+    if (varNames != null) {
+      varNames.addNames(varNamesCollector);
+    }
+    counters.setCounters(counterContainer);
+
+    return result;
+  }
+
+  /**
+   * Submits a task to the executor shared by all method processors. If all of its threads are busy, the task
+   * is run on the calling thread instead.
+   */
+  public static <T> Future<T> submit(Callable<T> task) {
+    return ExecutorHolder.EXECUTOR.submit(task);
+  }
+
+  private void cancel(Future<?> future) {
+    synchronized (this) {
+      canceled = true;
+      if (!finished) {
+        // the thread stays busy until the next checkTimeLimit(), don't let it count against the bound
+        abandoned = true;
+        ExecutorHolder.addAbandoned();
+      }
+    }
+    future.cancel(true);
+  }
 
-    finished = true;
-    synchronized (lock) {
-      lock.notifyAll();
+  /**
+   * Cooperative cancellation point for the long-running loops of the method pipeline. Does nothing unless
+   * the current thread is processing a method with a time limit.
+   */
+  public static void checkTimeLimit() {
+    MethodProcessorRunnable processor = currentProcessor.get();
+    if (processor != null && (processor.canceled || System.nanoTime() - processor.deadline >= 0)) {
+      throw new TimeLimitExceededException(processor.method);
     }
   }
 
+  /**
+   * Fails the current method if a structure built for it has more nodes than allowed by the
+   * {@link IFernflowerPreferences#MAX_PROCESSING_NODES} option.
+   */
+  public static void checkWorkLimit(String nodes, int size) {
+    int limit = getWorkLimit();
+    if (limit > 0 && size > limit) {
+      throw new WorkLimitExceededException(nodes, size, limit);
+    }
+  }
+
+  /**
+   * Returns the maximum size of the structures built for a single method, or 0 if it is unlimited.
+   */
+  public static int getWorkLimit() {
+    return Integer.parseInt(DecompilerContext.getProperty(IFernflowerPreferences.MAX_PROCESSING_NODES).toString());
+  }
+
   public static RootStatement codeToJava(StructMethod mt, VarProcessor varProc) throws IOException {
     StructClass cl = mt.getClassStruct();
 
     boolean isInitializer = CodeConstants.CLINIT_NAME.equals(mt.getName()); // for now static initializer only
 
+    MethodPhaseTimer timer = MethodPhaseTimer.start(mt);
+
     mt.expandData();
     InstructionSequence seq = mt.getInstructionSequence();
     ControlFlowGraph graph = new ControlFlowGraph(seq);
+    timer.end("ControlFlowGraph");
+
+    checkWorkLimit("control flow graph nodes and edges", getGraphSize(graph));
 
     DeadCodeHelper.removeDeadBlocks(graph);
     graph.inlineJsr(mt);
@@ -108,6 +225,7 @@ public class MethodProcessorRunnable implements Runnable {
     DeadCodeHelper.connectDummyExitBlock(graph);
 
     DeadCodeHelper.removeGotos(graph);
+    timer.end("DeadCodeHelper");
 
     ExceptionDeobfuscator.removeCircularRanges(graph);
 
@@ -132,14 +250,20 @@ public class MethodProcessorRunnable implements Runnable {
     if (ExceptionDeobfuscator.hasObfuscatedExceptions(graph)) {
       DecompilerContext.getLogger().writeMessage("Heavily obfuscated exception ranges found!", IFernflowerLogger.Severity.WARN);
     }
+    timer.end("ExceptionDeobfuscator");
 
     RootStatement root = DomHelper.parseGraph(graph, mt);
-    MethodProcessorRunnable.currentRoot = root;
-    MethodProcessorRunnable.vp = varProc;
+    timer.end("DomHelper.parseGraph");
+    checkTimeLimit();
     FinallyProcessor fProc = new FinallyProcessor(varProc);
+    int iterations = 0;
     while (fProc.iterateGraph(mt, root, graph)) {
+      checkTimeLimit();
       root = DomHelper.parseGraph(graph, mt);
+      iterations++;
     }
+    timer.end("FinallyProcessor");
+    timer.iterations("FinallyProcessor", iterations);
 
     // remove synchronized exception handler
     // not until now because of comparison between synchronized statements in the finally cycle
@@ -150,38 +274,64 @@ public class MethodProcessorRunnable implements Runnable {
     SequenceHelper.condenseSequences(root);
 
     ClearStructHelper.clearStatements(root);
+    timer.end("ClearStructHelper");
 
+    checkTimeLimit();
     ExprProcessor proc = new ExprProcessor();
     proc.processStatement(root, cl);
 
     SequenceHelper.condenseSequences(root);
+    timer.end("ExprProcessor");
 
+    iterations = 0;
     while (true) {
+      checkTimeLimit();
+      iterations++;
+
       StackVarsProcessor stackProc = new StackVarsProcessor();
       stackProc.simplifyStackVars(root, mt, cl);
+      timer.end("StackVarsProcessor");
 
       varProc.setVarVersions(root);
+      timer.end("VarProcessor.setVarVersions");
 
-      if (!new PPandMMHelper(varProc).findPPandMM(root)) {
+      boolean found = new PPandMMHelper(varProc).findPPandMM(root);
+      timer.end("PPandMMHelper");
+      if (!found) {
         break;
       }
     }
+    timer.iterations("StackVarsProcessor", iterations);
 
+    iterations = 0;
+    int loopIterations = 0;
     while (true) {
+      iterations++;
       LabelHelper.cleanUpEdges(root);
+      timer.end("LabelHelper.cleanUpEdges");
 
       while (true) {
-        if (EliminateLoopsHelper.eliminateLoops(root, cl)) {
+        checkTimeLimit();
+        loopIterations++;
+
+        boolean eliminated = EliminateLoopsHelper.eliminateLoops(root, cl);
+        timer.end("EliminateLoopsHelper");
+        if (eliminated) {
           continue;
         }
 
-        if (LoopExtractHelper.extractLoops(root)) {
+        boolean extracted = LoopExtractHelper.extractLoops(root);
+        timer.end("LoopExtractHelper");
+        if (extracted) {
           continue;
         }
 
         MergeHelper.enhanceLoops(root);
+        timer.end("MergeHelper");
 
-        if (!IfHelper.mergeAllIfs(root)) {
+        boolean merged = IfHelper.mergeAllIfs(root);
+        timer.end("IfHelper");
+        if (!merged) {
           break;
         }
       }
@@ -195,16 +345,22 @@ public class MethodProcessorRunnable implements Runnable {
 
           varProc.setVarVersions(root);
         }
+        timer.end("IdeaNotNullHelper");
       }
 
       LabelHelper.identifyLabels(root);
+      timer.end("LabelHelper.identifyLabels");
 
-      if (InlineSingleBlockHelper.inlineSingleBlocks(root)) {
+      boolean inlined = InlineSingleBlockHelper.inlineSingleBlocks(root);
+      timer.end("InlineSingleBlockHelper");
+      if (inlined) {
         continue;
       }
 
       // initializer may have at most one return point, so no transformation of method exits permitted
-      if (isInitializer || !ExitHelper.condenseExits(root)) {
+      boolean condensed = !isInitializer && ExitHelper.condenseExits(root);
+      timer.end("ExitHelper.condenseExits");
+      if (!condensed) {
         break;
       }
 
@@ -213,20 +369,27 @@ public class MethodProcessorRunnable implements Runnable {
       //				break;
       //			}
     }
+    timer.iterations("LabelHelper.cleanUpEdges", iterations);
+    timer.iterations("EliminateLoopsHelper", loopIterations);
 
     ExitHelper.removeRedundantReturns(root);
 
     SecondaryFunctionsHelper.identifySecondaryFunctions(root);
 
     SynchronizedHelper.cleanSynchronizedVar(root);
+    timer.end("SecondaryFunctionsHelper");
 
+    checkTimeLimit();
     varProc.setVarDefinitions(root);
+    timer.end("VarProcessor.setVarDefinitions");
 
     // must be the last invocation, because it makes the statement structure inconsistent
     // FIXME: new edge type needed
     LabelHelper.replaceContinueWithBreak(root);
 
+    checkTimeLimit();
     mt.releaseResources();
+    timer.end("LabelHelper.replaceContinueWithBreak");
 
     return root;
   }
@@ -241,9 +404,52 @@ public class MethodProcessorRunnable implements Runnable {
     return finished;
   }
 
-  public static void printMethod(String desc) {
-      printMethod(currentRoot, desc, vp);
+  // blocks and edges, exception edges can grow quadratically
+  private static int getGraphSize(ControlFlowGraph graph) {
+    int size = 0;
+    for (BasicBlock block : graph.getBlocks()) {
+      size += 1 + block.getSuccs().size() + block.getSuccExceptions().size();
+    }
+    return size;
+  }
+
+  public static class TimeLimitExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public TimeLimitExceededException(StructMethod mt) {
+      super("Processing time limit exceeded for method " + mt.getName() + " " + mt.getDescriptor());
+    }
   }
+
+  public static class WorkLimitExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public WorkLimitExceededException(String nodes, int size, int limit) {
+      super("too many " + nodes + ": " + size + " > " + limit);
+    }
+  }
+
+  private static class ExecutorHolder {
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    // bounded by the number of processors, overflow runs on the submitting thread and relies on checkTimeLimit()
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+      0, THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+      new ThreadFactoryBuilder().setNameFormat("Java decompiler method %d").setDaemon(true).build(),
+      new ThreadPoolExecutor.CallerRunsPolicy());
+
+    // timed out tasks that are still running
+    private static int abandoned;
+
+    private static synchronized void addAbandoned() {
+      EXECUTOR.setMaximumPoolSize(THREADS + ++abandoned);
+    }
+
+    private static synchronized void releaseAbandoned() {
+      EXECUTOR.setMaximumPoolSize(THREADS + --abandoned);
+    }
+  }
+
   public static void printMethod(Statement root, String name, VarProcessor varProc) {
     System.out.println(name + " {");
     if (root == null || root.getSequentialObjects() == null) {
@@ -16,6 +16,7 @@
 package org.jetbrains.java.decompiler.main.rels;
 
 import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.MethodMemoCache;
 import org.jetbrains.java.decompiler.main.collectors.CounterContainer;
 import org.jetbrains.java.decompiler.main.extern.IVariableNameProvider;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.DirectGraph;
@@ -27,6 +28,7 @@ import org.jetbrains.java.decompiler.struct.StructMethod;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 
 public class MethodWrapper {
@@ -47,6 +49,15 @@ public class MethodWrapper {
 
   public final HashSet<String> setOuterVarNames = new HashSet<String>();
 
+  // key of the method in the method cache, if the decompiled body should be memoized
+  public String memoKey;
+
+  // names requested from the import collector while the method was processed
+  public Map<String, Boolean> memoProcessingNames;
+
+  // memoized body that is written instead of the root statement
+  public MethodMemoCache.Entry memo;
+
   public MethodWrapper(RootStatement root, VarProcessor varproc, StructMethod methodStruct, CounterContainer counter) {
     this.root = root;
     this.varproc = varproc;
@@ -367,6 +367,7 @@ public class DomHelper {
           boolean forceall = i != 0;
 
           while (true) {
+            MethodProcessorRunnable.checkTimeLimit();
 
             if (findSimpleStatements(general, mapExtPost)) {
               reducibility = 0;
@@ -600,6 +601,7 @@ public class DomHelper {
     boolean found, success = false;
 
     do {
+      MethodProcessorRunnable.checkTimeLimit();
       found = false;
 
       List<Statement> lstStats = stat.getPostReversePostOrderList();
@@ -15,6 +15,7 @@
  */
 package org.jetbrains.java.decompiler.modules.decompiler;
 
+import org.jetbrains.java.decompiler.main.rels.MethodProcessorRunnable;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.DoStatement;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.Statement;
 import org.jetbrains.java.decompiler.struct.StructClass;
@@ -39,6 +40,7 @@ public class EliminateLoopsHelper {
 
   			SimplifyExprentsHelper sehelper = new SimplifyExprentsHelper(false);
   			while(sehelper.simplifyStackVarsStatement(root, setReorderedIfs, null,cl)) {
+  				MethodProcessorRunnable.checkTimeLimit();
   				SequenceHelper.condenseSequences(root);
   			}
   		}
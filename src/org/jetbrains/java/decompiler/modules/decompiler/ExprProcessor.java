@@ -22,6 +22,7 @@ import org.jetbrains.java.decompiler.code.cfg.BasicBlock;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.TextBuffer;
 import org.jetbrains.java.decompiler.main.collectors.BytecodeMappingTracer;
+import org.jetbrains.java.decompiler.main.rels.MethodProcessorRunnable;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.*;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.DirectGraph;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.DirectNode;
@@ -149,6 +150,7 @@ public class ExprProcessor implements CodeConstants {
 
     FlattenStatementsHelper flatthelper = new FlattenStatementsHelper();
     DirectGraph dgraph = flatthelper.buildDirectGraph(root);
+    MethodProcessorRunnable.checkWorkLimit("direct graph nodes", dgraph.nodes.size());
 
     //		try {
     //			DotExporter.toDotFile(dgraph, new File("c:\\Temp\\gr12_my.dot"));
@@ -187,6 +189,7 @@ public class ExprProcessor implements CodeConstants {
     mapData.put(dgraph.first, map);
 
     while (!stack.isEmpty()) {
+      MethodProcessorRunnable.checkTimeLimit();
 
       DirectNode node = stack.removeFirst();
       LinkedList<String> entrypoints = stackEntryPoint.removeFirst();
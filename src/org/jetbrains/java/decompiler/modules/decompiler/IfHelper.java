@@ -15,6 +15,7 @@
  */
 package org.jetbrains.java.decompiler.modules.decompiler;
 
+import org.jetbrains.java.decompiler.main.rels.MethodProcessorRunnable;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.Exprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.FunctionExprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.IfExprent;
@@ -85,6 +86,7 @@ public class IfHelper {
     boolean res = false;
 
     while (true) {
+      MethodProcessorRunnable.checkTimeLimit();
 
       boolean updated = false;
 
@@ -16,6 +16,7 @@
 package org.jetbrains.java.decompiler.modules.decompiler;
 
 import org.jetbrains.java.decompiler.code.CodeConstants;
+import org.jetbrains.java.decompiler.main.rels.MethodProcessorRunnable;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.*;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.*;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.DoStatement;
@@ -28,7 +29,8 @@ import org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionsGraph;
 import org.jetbrains.java.decompiler.struct.StructClass;
 import org.jetbrains.java.decompiler.struct.StructMethod;
 import org.jetbrains.java.decompiler.util.FastSparseSetFactory.FastSparseSet;
-import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.LongIntMap;
+import org.jetbrains.java.decompiler.util.LongObjectMap;
 import org.jetbrains.java.decompiler.util.SFormsFastMapDirect;
 
 import java.util.*;
@@ -37,6 +39,9 @@ import java.util.Map.Entry;
 
 public class StackVarsProcessor {
 
+  // set by iterateStatements if the type of a loop was changed, which is not reported as a change
+  private boolean loopTypeChanged;
+
   public void simplifyStackVars(RootStatement root, StructMethod mt, StructClass cl) {
 
     HashSet<Integer> setReorderedIfs = new HashSet<Integer>();
@@ -44,6 +49,7 @@ public class StackVarsProcessor {
     SSAUConstructorSparseEx ssau = null;
 
     while (true) {
+      MethodProcessorRunnable.checkTimeLimit();
 
       boolean found = false;
 
@@ -93,21 +99,24 @@ public class StackVarsProcessor {
       }
     }
 
-    // remove unused assignments
-    ssau = new SSAUConstructorSparseEx();
-    ssau.splitVariables(root, mt);
+    // remove unused assignments. The last pass of the loop did that on the same statements already and changed
+    // nothing, so its result would only differ if a loop type has been changed since.
+    if (loopTypeChanged) {
+      ssau = new SSAUConstructorSparseEx();
+      ssau.splitVariables(root, mt);
 
-    //		try {
-    //			DotExporter.toDotFile(ssau.getSsuversions(), new File("c:\\Temp\\gr12_my.dot"));
-    //		} catch(Exception ex) {
-    //			ex.printStackTrace();
-    //		}
+      //		try {
+      //			DotExporter.toDotFile(ssau.getSsuversions(), new File("c:\\Temp\\gr12_my.dot"));
+      //		} catch(Exception ex) {
+      //			ex.printStackTrace();
+      //		}
 
-    iterateStatements(root, ssau);
+      iterateStatements(root, ssau);
 
-    //		System.out.println("~~~~~~~~~~~~~~~~~~~~~~ \r\n"+root.toJava());
+      //		System.out.println("~~~~~~~~~~~~~~~~~~~~~~ \r\n"+root.toJava());
 
-    setVersionsToNull(root);
+      setVersionsToNull(root);
+    }
   }
 
   private static void setVersionsToNull(Statement stat) {
@@ -148,18 +157,19 @@ public class StackVarsProcessor {
     DirectGraph dgraph = flatthelper.buildDirectGraph(root);
 
     boolean res = false;
+    loopTypeChanged = false;
 
     HashSet<DirectNode> setVisited = new HashSet<DirectNode>();
     LinkedList<DirectNode> stack = new LinkedList<DirectNode>();
-    LinkedList<HashMap<VarVersionPair, Exprent>> stackMaps = new LinkedList<HashMap<VarVersionPair, Exprent>>();
+    LinkedList<LongObjectMap<Exprent>> stackMaps = new LinkedList<LongObjectMap<Exprent>>();
 
     stack.add(dgraph.first);
-    stackMaps.add(new HashMap<VarVersionPair, Exprent>());
+    stackMaps.add(new LongObjectMap<Exprent>());
 
     while (!stack.isEmpty()) {
 
       DirectNode nd = stack.removeFirst();
-      HashMap<VarVersionPair, Exprent> mapVarValues = stackMaps.removeFirst();
+      LongObjectMap<Exprent> mapVarValues = stackMaps.removeFirst();
 
       if (setVisited.contains(nd)) {
         continue;
@@ -211,7 +221,7 @@ public class StackVarsProcessor {
 
       for (DirectNode ndx : nd.succs) {
         stack.add(ndx);
-        stackMaps.add(new HashMap<VarVersionPair, Exprent>(mapVarValues));
+        stackMaps.add(new LongObjectMap<Exprent>(mapVarValues));
       }
 
       // make sure the 3 special exprent lists in a loop (init, condition, increment) are not empty
@@ -227,6 +237,7 @@ public class StackVarsProcessor {
               loop.getInitExprent() == null &&
               loop.getIncExprent() == null) { // "downgrade" loop to 'while'
             loop.setLooptype(DoStatement.LOOP_WHILE);
+            loopTypeChanged = true;
           }
         }
       }
@@ -236,13 +247,13 @@ public class StackVarsProcessor {
   }
 
 
-  private static Exprent isReplaceableVar(Exprent exprent, HashMap<VarVersionPair, Exprent> mapVarValues, SSAUConstructorSparseEx ssau) {
+  private static Exprent isReplaceableVar(Exprent exprent, LongObjectMap<Exprent> mapVarValues, SSAUConstructorSparseEx ssau) {
 
     Exprent dest = null;
 
     if (exprent.type == Exprent.EXPRENT_VAR) {
       VarExprent var = (VarExprent)exprent;
-      dest = mapVarValues.get(new VarVersionPair(var));
+      dest = mapVarValues.get(VarVersionPair.toLong(var.getIndex(), var.getVersion()));
     }
 
     return dest;
@@ -279,8 +290,8 @@ public class StackVarsProcessor {
     }
   }
 
-  private int[] iterateExprent(List<Exprent> lstExprents, int index, Exprent next, HashMap<VarVersionPair,
-    Exprent> mapVarValues, SSAUConstructorSparseEx ssau) {
+  private int[] iterateExprent(List<Exprent> lstExprents, int index, Exprent next, LongObjectMap<Exprent> mapVarValues,
+                               SSAUConstructorSparseEx ssau) {
 
     Exprent exprent = lstExprents.get(index);
 
@@ -418,10 +429,10 @@ public class StackVarsProcessor {
       for (VarVersionPair usedver : setTempUsedVers) {
         Exprent copy = right.copy();
         if (right.type == Exprent.EXPRENT_FIELD && ssau.getMapFieldVars().containsKey(right.id)) {
-          ssau.getMapFieldVars().put(copy.id, ssau.getMapFieldVars().get(right.id));
+          ssau.getMapFieldVars().put(copy.id, ssau.getMapFieldVars().get(right.id, 0));
         }
 
-        mapVarValues.put(usedver, copy);
+        mapVarValues.put(usedver.toLong(), copy);
       }
     }
 
@@ -458,7 +469,7 @@ public class StackVarsProcessor {
   private static Object[] iterateChildExprent(Exprent exprent,
                                               Exprent parent,
                                               Exprent next,
-                                              HashMap<VarVersionPair, Exprent> mapVarValues,
+                                              LongObjectMap<Exprent> mapVarValues,
                                               SSAUConstructorSparseEx ssau) {
 
     boolean changed = false;
@@ -576,10 +587,10 @@ public class StackVarsProcessor {
       for (VarVersionPair usedver : setTempUsedVers) {
         Exprent copy = right.copy();
         if (right.type == Exprent.EXPRENT_FIELD && ssau.getMapFieldVars().containsKey(right.id)) {
-          ssau.getMapFieldVars().put(copy.id, ssau.getMapFieldVars().get(right.id));
+          ssau.getMapFieldVars().put(copy.id, ssau.getMapFieldVars().get(right.id, 0));
         }
 
-        mapVarValues.put(usedver, copy);
+        mapVarValues.put(usedver.toLong(), copy);
       }
 
       // remove assignment
@@ -652,8 +663,8 @@ public class StackVarsProcessor {
     }
 
     // compare protected ranges
-    if (!InterpreterUtil.equalObjects(ssau.getMapVersionFirstRange().get(leftpaar),
-                                      ssau.getMapVersionFirstRange().get(usedvar))) {
+    LongIntMap mapVersionFirstRange = ssau.getMapVersionFirstRange();
+    if (mapVersionFirstRange.get(leftpaar.toLong(), -1) != mapVersionFirstRange.get(usedvar.toLong(), -1)) {
       return false;
     }
 
@@ -703,9 +714,7 @@ public class StackVarsProcessor {
         if (leftvar.var != varindex) {
           if (mapLiveVars.containsKey(varindex)) {
             HashSet<VarVersionPair> verset = new HashSet<VarVersionPair>();
-            for (Integer vers : mapLiveVars.get(varindex)) {
-              verset.add(new VarVersionPair(varindex, vers.intValue()));
-            }
+            mapLiveVars.get(varindex).forEachInt(vers -> verset.add(new VarVersionPair(varindex, vers)));
             map.put(varindex, verset);
           }
           else {
@@ -718,12 +727,10 @@ public class StackVarsProcessor {
       }
       else if (expr.type == Exprent.EXPRENT_FIELD) {
         if (ssau.getMapFieldVars().containsKey(expr.id)) {
-          int varindex = ssau.getMapFieldVars().get(expr.id);
+          int varindex = ssau.getMapFieldVars().get(expr.id, 0);
           if (mapLiveVars.containsKey(varindex)) {
             HashSet<VarVersionPair> verset = new HashSet<VarVersionPair>();
-            for (Integer vers : mapLiveVars.get(varindex)) {
-              verset.add(new VarVersionPair(varindex, vers.intValue()));
-            }
+            mapLiveVars.get(varindex).forEachInt(vers -> verset.add(new VarVersionPair(varindex, vers)));
             map.put(varindex, verset);
           }
         }
@@ -19,10 +19,12 @@ import org.jetbrains.java.decompiler.modules.decompiler.exps.Exprent;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.FlattenStatementsHelper.FinallyPathWrapper;
 import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 
 public class DirectGraph {
@@ -49,10 +51,67 @@ public class DirectGraph {
 
     nodes.clear();
     for (DirectNode node : res) {
+      node.index = nodes.size();
       nodes.addWithKey(node, node.id);
     }
   }
 
+  /**
+   * Returns the index of the node with the given id, or -1 if there is no such node in the graph.
+   */
+  public int getNodeIndex(String id) {
+    DirectNode node = nodes.getWithKey(id);
+    return node == null ? -1 : node.index;
+  }
+
+  /**
+   * Returns, per node index, the index of the negative if branch of the node. The value is -1 if the node has none,
+   * and -2 if the branch is not part of the graph.
+   */
+  public int[] getNegIfBranchIndices() {
+    int[] result = new int[nodes.size()];
+    Arrays.fill(result, -1);
+    for (Map.Entry<String, String> entry : mapNegIfBranch.entrySet()) {
+      int index = getNodeIndex(entry.getKey());
+      if (index >= 0) {
+        int branch = getNodeIndex(entry.getValue());
+        result[index] = branch >= 0 ? branch : -2;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns, per node index, whether a predecessor of the node is the exit of a finally block.
+   */
+  public boolean[] getFinallyExitSuccessors() {
+    boolean[] exits = getFinallyExits();
+    boolean[] result = new boolean[nodes.size()];
+    for (DirectNode node : nodes) {
+      for (DirectNode pred : node.preds) {
+        if (pred.index >= 0 && exits[pred.index]) {
+          result[node.index] = true;
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns, per node index, whether the node is the exit of a finally block.
+   */
+  public boolean[] getFinallyExits() {
+    boolean[] result = new boolean[nodes.size()];
+    for (String id : mapShortRangeFinallyPaths.keySet()) {
+      int index = getNodeIndex(id);
+      if (index >= 0) {
+        result[index] = true;
+      }
+    }
+    return result;
+  }
+
   private static void addToReversePostOrderListIterative(DirectNode root, List<DirectNode> lst) {
 
     LinkedList<DirectNode> stackNode = new LinkedList<DirectNode>();
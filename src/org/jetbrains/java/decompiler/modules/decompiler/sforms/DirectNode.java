@@ -36,6 +36,9 @@ public class DirectNode {
 
   public final String id;
 
+  // position of the node in DirectGraph.nodes, -1 if the node is not reachable
+  public int index = -1;
+
   public BasicBlockStatement block;
 
   public final Statement statement;
@@ -16,6 +16,7 @@
 package org.jetbrains.java.decompiler.modules.decompiler.sforms;
 
 import org.jetbrains.java.decompiler.code.CodeConstants;
+import org.jetbrains.java.decompiler.main.rels.MethodProcessorRunnable;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.AssignmentExprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.Exprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.FunctionExprent;
@@ -30,34 +31,43 @@ import org.jetbrains.java.decompiler.struct.StructMethod;
 import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.util.FastSparseSetFactory;
 import org.jetbrains.java.decompiler.util.FastSparseSetFactory.FastSparseSet;
-import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.IntIntMap;
 import org.jetbrains.java.decompiler.util.SFormsFastMapDirect;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map.Entry;
 
 public class SSAConstructorSparseEx {
 
-  // node id, var, version
-  private final HashMap<String, SFormsFastMapDirect> inVarVersions = new HashMap<String, SFormsFastMapDirect>();
+  // node index, var, version
+  private SFormsFastMapDirect[] inVarVersions;
 
-  // node id, var, version (direct branch)
-  private final HashMap<String, SFormsFastMapDirect> outVarVersions = new HashMap<String, SFormsFastMapDirect>();
+  // node index, var, version (direct branch)
+  private SFormsFastMapDirect[] outVarVersions;
 
-  // node id, var, version (negative branch)
-  private final HashMap<String, SFormsFastMapDirect> outNegVarVersions = new HashMap<String, SFormsFastMapDirect>();
+  // node index, var, version (negative branch)
+  private SFormsFastMapDirect[] outNegVarVersions;
 
-  // node id, var, version
-  private final HashMap<String, SFormsFastMapDirect> extraVarVersions = new HashMap<String, SFormsFastMapDirect>();
+  // node index, var, version
+  private SFormsFastMapDirect[] extraVarVersions;
+
+  // node index, index of the negative if branch
+  private int[] negIfBranches;
+
+  // node index, exit of a finally block
+  private boolean[] finallyExits;
+
+  // node index, the in map depends on nodes other than the predecessors, revisited in every pass
+  private boolean[] alwaysVisited;
 
   // (var, version), version
   private final HashMap<VarVersionPair, FastSparseSet<Integer>> phi = new HashMap<VarVersionPair, FastSparseSet<Integer>>();
 
   // var, version
-  private final HashMap<Integer, Integer> lastversion = new HashMap<Integer, Integer>();
+  private final IntIntMap lastversion = new IntIntMap();
 
   @Deprecated // Collection containing all vars for catch blocks and parameters. Not used for anything...
   private final List<VarVersionPair> startVars = new ArrayList<VarVersionPair>();
@@ -65,13 +75,29 @@ public class SSAConstructorSparseEx {
   // set factory
   private FastSparseSetFactory<Integer> factory;
 
+  // number of variable versions created so far and its limit
+  private int versionCount;
+  private int versionLimit;
+
   public void splitVariables(RootStatement root, StructMethod mt) {
 
+    versionLimit = MethodProcessorRunnable.getWorkLimit();
+
     FlattenStatementsHelper flatthelper = new FlattenStatementsHelper();
     DirectGraph dgraph = flatthelper.buildDirectGraph(root);
+    MethodProcessorRunnable.checkWorkLimit("direct graph nodes", dgraph.nodes.size());
 
     org.jetbrains.java.decompiler.util.DotExporter.toDotFile(dgraph, mt, "ssaSplitVariables");
 
+    int size = dgraph.nodes.size();
+    inVarVersions = new SFormsFastMapDirect[size];
+    outVarVersions = new SFormsFastMapDirect[size];
+    outNegVarVersions = new SFormsFastMapDirect[size];
+    extraVarVersions = new SFormsFastMapDirect[size];
+    negIfBranches = dgraph.getNegIfBranchIndices();
+    finallyExits = dgraph.getFinallyExits();
+    alwaysVisited = dgraph.getFinallyExitSuccessors();
+
     List<Integer> setInit = new ArrayList<Integer>(); //Important: HashSets have undefined order, so use a ordered list.
     for (int i = 0; i < 64; i++) {
       setInit.add(i);
@@ -79,13 +105,16 @@ public class SSAConstructorSparseEx {
     factory = new FastSparseSetFactory<Integer>(setInit);
 
     SFormsFastMapDirect firstmap = createFirstMap(mt);
-    extraVarVersions.put(dgraph.first.id, firstmap);
+    extraVarVersions[dgraph.first.index] = firstmap;
 
     setCatchMaps(root, dgraph, flatthelper);
 
     int itteration = 1;
-    HashSet<String> updated = new HashSet<String>();
+    // nodes to be visited, all of them in the first pass
+    BitSet updated = new BitSet(size);
+    updated.set(0, size);
     do {
+      MethodProcessorRunnable.checkTimeLimit();
       // System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
       ssaStatements(dgraph, updated, mt, itteration++);
       // System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
@@ -93,11 +122,16 @@ public class SSAConstructorSparseEx {
     while (!updated.isEmpty());
   }
 
-  private void ssaStatements(DirectGraph dgraph, HashSet<String> updated, StructMethod mt, int itteration) {
+  private void ssaStatements(DirectGraph dgraph, BitSet updated, StructMethod mt, int itteration) {
 
     org.jetbrains.java.decompiler.util.DotExporter.toDotFile(dgraph, mt, "ssaStatements_" + itteration, outVarVersions);
 
+    // only the updated nodes are visited, a node with unchanged inputs would produce the same maps again
     for (DirectNode node : dgraph.nodes) {
+      int index = node.index;
+      if (!updated.get(index) && !alwaysVisited[index]) {
+        continue;
+      }
 
       //			if (node.id.endsWith("_inc")) {
       //				System.out.println();
@@ -109,11 +143,10 @@ public class SSAConstructorSparseEx {
       //				}
       //			}
 
-      updated.remove(node.id);
+      updated.clear(index);
       mergeInVarMaps(node, dgraph);
 
-      SFormsFastMapDirect varmap = inVarVersions.get(node.id);
-      varmap = new SFormsFastMapDirect(varmap);
+      SFormsFastMapDirect varmap = new SFormsFastMapDirect(inVarVersions[index]);
 
       SFormsFastMapDirect[] varmaparr = new SFormsFastMapDirect[]{varmap, null};
 
@@ -127,17 +160,17 @@ public class SSAConstructorSparseEx {
         varmaparr[1] = varmaparr[0];
       }
 
-      boolean this_updated = !mapsEqual(varmaparr[0], outVarVersions.get(node.id))
-                             || (outNegVarVersions.containsKey(node.id) && !mapsEqual(varmaparr[1], outNegVarVersions.get(node.id)));
+      boolean this_updated = !mapsEqual(varmaparr[0], outVarVersions[index])
+                             || (outNegVarVersions[index] != null && !mapsEqual(varmaparr[1], outNegVarVersions[index]));
 
       if (this_updated) {
-        outVarVersions.put(node.id, varmaparr[0]);
-        if (dgraph.mapNegIfBranch.containsKey(node.id)) {
-          outNegVarVersions.put(node.id, varmaparr[1]);
+        outVarVersions[index] = varmaparr[0];
+        if (negIfBranches[index] != -1) {
+          outNegVarVersions[index] = varmaparr[1];
         }
 
         for (DirectNode nd : node.succs) {
-          updated.add(nd.id);
+          updated.set(nd.index);
         }
       }
     }
@@ -283,15 +316,13 @@ public class SSAConstructorSparseEx {
     }
   }
 
-  private Integer getNextFreeVersion(Integer var) {
-    Integer nextver = lastversion.get(var);
-    if (nextver == null) {
-      nextver = new Integer(1);
-    }
-    else {
-      nextver = new Integer(nextver.intValue() + 1);
-    }
+  private int getNextFreeVersion(int var) {
+    int nextver = lastversion.get(var, 0) + 1;
     lastversion.put(var, nextver);
+
+    if (versionLimit > 0 && ++versionCount > versionLimit) {
+      throw new MethodProcessorRunnable.WorkLimitExceededException("variable versions", versionCount, versionLimit);
+    }
     return nextver;
   }
 
@@ -300,17 +331,30 @@ public class SSAConstructorSparseEx {
     SFormsFastMapDirect mapNew = new SFormsFastMapDirect();
 
     for (DirectNode pred : node.preds) {
-      SFormsFastMapDirect mapOut = getFilteredOutMap(node.id, pred.id, dgraph, node.id);
+      SFormsFastMapDirect mapOut;
+      if (pred.index < 0) {
+        continue; // not reachable, nothing flows out of it
+      }
+      else if (finallyExits[pred.index]) {
+        mapOut = getFilteredOutMap(node.id, pred.id, dgraph, node.id);
+      }
+      else {
+        // not modified, the map is copied or merged into a new one below
+        mapOut = negIfBranches[pred.index] == node.index ? outNegVarVersions[pred.index] : outVarVersions[pred.index];
+      }
+
       if (mapNew.isEmpty()) {
-        mapNew = mapOut.getCopy();
+        if (mapOut != null) {
+          mapNew = mapOut.getCopy();
+        }
       }
       else {
         mergeMaps(mapNew, mapOut);
       }
     }
 
-    if (extraVarVersions.containsKey(node.id)) {
-      SFormsFastMapDirect mapExtra = extraVarVersions.get(node.id);
+    SFormsFastMapDirect mapExtra = extraVarVersions[node.index];
+    if (mapExtra != null) {
       if (mapNew.isEmpty()) {
         mapNew = mapExtra.getCopy();
       }
@@ -319,20 +363,22 @@ public class SSAConstructorSparseEx {
       }
     }
 
-    inVarVersions.put(node.id, mapNew);
+    inVarVersions[node.index] = mapNew;
+  }
+
+  private SFormsFastMapDirect getVersions(SFormsFastMapDirect[] versions, String nodeid, DirectGraph dgraph) {
+    int index = dgraph.getNodeIndex(nodeid);
+    return index < 0 ? null : versions[index];
   }
 
   private SFormsFastMapDirect getFilteredOutMap(String nodeid, String predid, DirectGraph dgraph, String destid) {
 
     SFormsFastMapDirect mapNew = new SFormsFastMapDirect();
 
-    if (nodeid.equals(dgraph.mapNegIfBranch.get(predid))) {
-      if (outNegVarVersions.containsKey(predid)) {
-        mapNew = outNegVarVersions.get(predid).getCopy();
-      }
-    }
-    else if (outVarVersions.containsKey(predid)) {
-      mapNew = outVarVersions.get(predid).getCopy();
+    SFormsFastMapDirect mapOut = getVersions(nodeid.equals(dgraph.mapNegIfBranch.get(predid)) ? outNegVarVersions : outVarVersions,
+                                             predid, dgraph);
+    if (mapOut != null) {
+      mapNew = mapOut.getCopy();
     }
 
     boolean isFinallyExit = dgraph.mapShortRangeFinallyPaths.containsKey(predid);
@@ -362,10 +408,10 @@ public class SSAConstructorSparseEx {
         }
         else {
           if (finwrap.entry.equals(dgraph.mapNegIfBranch.get(finwrap.source))) {
-            map = outNegVarVersions.get(finwrap.source);
+            map = getVersions(outNegVarVersions, finwrap.source, dgraph);
           }
           else {
-            map = outVarVersions.get(finwrap.source);
+            map = getVersions(outVarVersions, finwrap.source, dgraph);
           }
         }
 
@@ -402,7 +448,7 @@ public class SSAConstructorSparseEx {
 
         mapNewTemp.union(mapTrueSource);
 
-        SFormsFastMapDirect oldInMap = inVarVersions.get(nodeid);
+        SFormsFastMapDirect oldInMap = getVersions(inVarVersions, nodeid, dgraph);
         if (oldInMap != null) {
           mapNewTemp.union(oldInMap);
         }
@@ -436,13 +482,7 @@ public class SSAConstructorSparseEx {
       return false;
     }
 
-    for (Entry<Integer, FastSparseSet<Integer>> ent2 : map2.entryList()) {
-      if (!InterpreterUtil.equalObjects(map1.get(ent2.getKey()), ent2.getValue())) {
-        return false;
-      }
-    }
-
-    return true;
+    return map1.equalsMap(map2);
   }
 
   private void setCurrentVar(SFormsFastMapDirect varmap, Integer var, Integer vers) {
@@ -474,7 +514,7 @@ public class SSAConstructorSparseEx {
           map = new SFormsFastMapDirect();
           setCurrentVar(map, varindex, version);
 
-          extraVarVersions.put(dgraph.nodes.getWithKey(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0]).id, map);
+          extraVarVersions[dgraph.getNodeIndex(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0])] = map;
           startVars.add(new VarVersionPair(varindex, version));
         }
     }
@@ -16,6 +16,7 @@
 package org.jetbrains.java.decompiler.modules.decompiler.sforms;
 
 import org.jetbrains.java.decompiler.code.CodeConstants;
+import org.jetbrains.java.decompiler.main.rels.MethodProcessorRunnable;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.*;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.FlattenStatementsHelper.FinallyPathWrapper;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.*;
@@ -27,11 +28,14 @@ import org.jetbrains.java.decompiler.struct.StructMethod;
 import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.util.FastSparseSetFactory;
 import org.jetbrains.java.decompiler.util.FastSparseSetFactory.FastSparseSet;
-import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.IntIntMap;
+import org.jetbrains.java.decompiler.util.LongIntMap;
+import org.jetbrains.java.decompiler.util.LongObjectMap;
 import org.jetbrains.java.decompiler.util.SFormsFastMapDirect;
 import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -39,33 +43,38 @@ import java.util.Map.Entry;
 
 public class SSAUConstructorSparseEx {
 
-  // node id, var, version
-  private final HashMap<String, SFormsFastMapDirect> inVarVersions = new HashMap<String, SFormsFastMapDirect>();
-  //private HashMap<String, HashMap<Integer, FastSet<Integer>>> inVarVersions = new HashMap<String, HashMap<Integer, FastSet<Integer>>>();
+  // node index, var, version
+  private SFormsFastMapDirect[] inVarVersions;
 
-  // node id, var, version (direct branch)
-  private final HashMap<String, SFormsFastMapDirect> outVarVersions = new HashMap<String, SFormsFastMapDirect>();
-  //private HashMap<String, HashMap<Integer, FastSet<Integer>>> outVarVersions = new HashMap<String, HashMap<Integer, FastSet<Integer>>>();
+  // node index, var, version (direct branch)
+  private SFormsFastMapDirect[] outVarVersions;
 
-  // node id, var, version (negative branch)
-  private final HashMap<String, SFormsFastMapDirect> outNegVarVersions = new HashMap<String, SFormsFastMapDirect>();
-  //private HashMap<String, HashMap<Integer, FastSet<Integer>>> outNegVarVersions = new HashMap<String, HashMap<Integer, FastSet<Integer>>>();
+  // node index, var, version (negative branch)
+  private SFormsFastMapDirect[] outNegVarVersions;
 
-  // node id, var, version
-  private final HashMap<String, SFormsFastMapDirect> extraVarVersions = new HashMap<String, SFormsFastMapDirect>();
-  //private HashMap<String, HashMap<Integer, FastSet<Integer>>> extraVarVersions = new HashMap<String, HashMap<Integer, FastSet<Integer>>>();
+  // node index, var, version
+  private SFormsFastMapDirect[] extraVarVersions;
+
+  // node index, index of the negative if branch
+  private int[] negIfBranches;
+
+  // node index, exit of a finally block
+  private boolean[] finallyExits;
+
+  // node index, the in map depends on nodes other than the predecessors, revisited in every pass
+  private boolean[] alwaysVisited;
 
   // (var, version), version
   private final HashMap<VarVersionPair, HashSet<Integer>> phi = new HashMap<VarVersionPair, HashSet<Integer>>();
 
   // var, version
-  private final HashMap<Integer, Integer> lastversion = new HashMap<Integer, Integer>();
+  private final IntIntMap lastversion = new IntIntMap();
 
   // version, protected ranges (catch, finally)
-  private final HashMap<VarVersionPair, Integer> mapVersionFirstRange = new HashMap<VarVersionPair, Integer>();
+  private final LongIntMap mapVersionFirstRange = new LongIntMap();
 
   // version, version
-  private final HashMap<VarVersionPair, VarVersionPair> phantomppnodes = new HashMap<VarVersionPair, VarVersionPair>(); // ++ and --
+  private final LongObjectMap<VarVersionPair> phantomppnodes = new LongObjectMap<VarVersionPair>(); // ++ and --
 
   // node.id, version, version
   private final HashMap<String, HashMap<VarVersionPair, VarVersionPair>> phantomexitnodes =
@@ -75,7 +84,7 @@ public class SSAUConstructorSparseEx {
   private final VarVersionsGraph ssuversions = new VarVersionsGraph();
 
   // field access vars (exprent id, var id)
-  private final HashMap<Integer, Integer> mapFieldVars = new HashMap<Integer, Integer>();
+  private final IntIntMap mapFieldVars = new IntIntMap();
 
   // field access counter
   private int fieldvarcounter = -1;
@@ -83,27 +92,46 @@ public class SSAUConstructorSparseEx {
   // set factory
   private FastSparseSetFactory<Integer> factory;
 
+  // number of variable versions created so far and its limit
+  private int versionCount;
+  private int versionLimit;
+
   public void splitVariables(RootStatement root, StructMethod mt) {
 
+    versionLimit = MethodProcessorRunnable.getWorkLimit();
+
     FlattenStatementsHelper flatthelper = new FlattenStatementsHelper();
     DirectGraph dgraph = flatthelper.buildDirectGraph(root);
+    MethodProcessorRunnable.checkWorkLimit("direct graph nodes", dgraph.nodes.size());
 
     org.jetbrains.java.decompiler.util.DotExporter.toDotFile(dgraph, mt, "ssauSplitVariables");
 
+    int size = dgraph.nodes.size();
+    inVarVersions = new SFormsFastMapDirect[size];
+    outVarVersions = new SFormsFastMapDirect[size];
+    outNegVarVersions = new SFormsFastMapDirect[size];
+    extraVarVersions = new SFormsFastMapDirect[size];
+    negIfBranches = dgraph.getNegIfBranchIndices();
+    finallyExits = dgraph.getFinallyExits();
+    alwaysVisited = dgraph.getFinallyExitSuccessors();
+
     List<Integer> setInit = new ArrayList<Integer>(); //Important: HashSets have undefined order, so use a ordered list.
     for (int i = 0; i < 64; i++) {
       setInit.add(i);
     }
     factory = new FastSparseSetFactory<Integer>(setInit);
 
-    extraVarVersions.put(dgraph.first.id, createFirstMap(mt, root));
+    extraVarVersions[dgraph.first.index] = createFirstMap(mt, root);
 
     setCatchMaps(root, dgraph, flatthelper);
 
 
     int itteration = 1;
-    HashSet<String> updated = new HashSet<String>();
+    // nodes to be visited, all of them in the first pass
+    BitSet updated = new BitSet(size);
+    updated.set(0, size);
     do {
+      MethodProcessorRunnable.checkTimeLimit();
       //			System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
       ssaStatements(dgraph, updated, false, mt, itteration++);
       //			System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
@@ -111,21 +139,28 @@ public class SSAUConstructorSparseEx {
     while (!updated.isEmpty());
 
 
+    // live variables are collected from all nodes
+    updated.set(0, size);
     ssaStatements(dgraph, updated, true, mt, itteration);
 
     ssuversions.initDominators();
   }
 
-  private void ssaStatements(DirectGraph dgraph, HashSet<String> updated, boolean calcLiveVars, StructMethod mt, int itteration) {
+  private void ssaStatements(DirectGraph dgraph, BitSet updated, boolean calcLiveVars, StructMethod mt, int itteration) {
 
     org.jetbrains.java.decompiler.util.DotExporter.toDotFile(dgraph, mt, "ssauStatements_" + itteration);
 
+    // only the updated nodes are visited, a node with unchanged inputs would produce the same maps again
     for (DirectNode node : dgraph.nodes) {
+      int index = node.index;
+      if (!updated.get(index) && !alwaysVisited[index]) {
+        continue;
+      }
 
-      updated.remove(node.id);
+      updated.clear(index);
       mergeInVarMaps(node, dgraph);
 
-      SFormsFastMapDirect varmap = new SFormsFastMapDirect(inVarVersions.get(node.id));
+      SFormsFastMapDirect varmap = new SFormsFastMapDirect(inVarVersions[index]);
 
       SFormsFastMapDirect[] varmaparr = new SFormsFastMapDirect[]{varmap, null};
 
@@ -148,18 +183,18 @@ public class SSAUConstructorSparseEx {
         varmaparr[1].removeAllFields();
       }
 
-      boolean this_updated = !mapsEqual(varmaparr[0], outVarVersions.get(node.id))
-                             || (outNegVarVersions.containsKey(node.id) && !mapsEqual(varmaparr[1], outNegVarVersions.get(node.id)));
+      boolean this_updated = !mapsEqual(varmaparr[0], outVarVersions[index])
+                             || (outNegVarVersions[index] != null && !mapsEqual(varmaparr[1], outNegVarVersions[index]));
 
       if (this_updated) {
 
-        outVarVersions.put(node.id, varmaparr[0]);
-        if (dgraph.mapNegIfBranch.containsKey(node.id)) {
-          outNegVarVersions.put(node.id, varmaparr[1]);
+        outVarVersions[index] = varmaparr[0];
+        if (negIfBranches[index] != -1) {
+          outNegVarVersions[index] = varmaparr[1];
         }
 
         for (DirectNode nd : node.succs) {
-          updated.add(nd.id);
+          updated.set(nd.index);
         }
       }
     }
@@ -259,7 +294,7 @@ public class SSAUConstructorSparseEx {
 
       int index;
       if (mapFieldVars.containsKey(expr.id)) {
-        index = mapFieldVars.get(expr.id);
+        index = mapFieldVars.get(expr.id, 0);
       }
       else {
         index = fieldvarcounter--;
@@ -334,7 +369,7 @@ public class SSAUConstructorSparseEx {
             VarVersionPair varpaar = new VarVersionPair(varindex.intValue(), var.getVersion());
 
             // ssu graph
-            VarVersionPair phantomver = phantomppnodes.get(varpaar);
+            VarVersionPair phantomver = phantomppnodes.get(varpaar.toLong());
             if (phantomver == null) {
               // get next version
               Integer nextver = getNextFreeVersion(varindex, null);
@@ -355,7 +390,7 @@ public class SSAUConstructorSparseEx {
               }
               vers.add(nextver);
               createOrUpdatePhiNode(varpaar, vers, stat);
-              phantomppnodes.put(varpaar, phantomver);
+              phantomppnodes.put(varpaar.toLong(), phantomver);
             }
             if (calcLiveVars) {
               varMapToGraph(varpaar, varmap);
@@ -431,7 +466,8 @@ public class SSAUConstructorSparseEx {
     HashSet<Integer> phiVers = new HashSet<Integer>();
 
     // take into account the corresponding mm/pp node if existing
-    int ppvers = phantomppnodes.containsKey(phivar) ? phantomppnodes.get(phivar).version : -1;
+    VarVersionPair ppvar = phantomppnodes.get(phivar.toLong());
+    int ppvers = ppvar != null ? ppvar.version : -1;
 
     // ssu graph
     VarVersionNode phinode = ssuversions.nodes.getWithKey(phivar);
@@ -498,23 +534,20 @@ public class SSAUConstructorSparseEx {
     node.live = new SFormsFastMapDirect(varmap);
   }
 
-  private Integer getNextFreeVersion(Integer var, Statement stat) {
+  private int getNextFreeVersion(int var, Statement stat) {
 
-    Integer nextver = lastversion.get(var);
+    int nextver = lastversion.get(var, 0) + 1;
+    lastversion.put(var, nextver);
 
-    if (nextver == null) {
-      nextver = new Integer(1);
-    }
-    else {
-      nextver = new Integer(nextver.intValue() + 1);
+    if (versionLimit > 0 && ++versionCount > versionLimit) {
+      throw new MethodProcessorRunnable.WorkLimitExceededException("variable versions", versionCount, versionLimit);
     }
-    lastversion.put(var, nextver);
 
     // save the first protected range, containing current statement
     if (stat != null) { // null iff phantom version
       Integer firstRangeId = getFirstProtectedRange(stat);
       if (firstRangeId != null) {
-        mapVersionFirstRange.put(new VarVersionPair(var, nextver), firstRangeId);
+        mapVersionFirstRange.put(VarVersionPair.toLong(var, nextver), firstRangeId);
       }
     }
 
@@ -527,17 +560,28 @@ public class SSAUConstructorSparseEx {
     SFormsFastMapDirect mapNew = new SFormsFastMapDirect();
 
     for (DirectNode pred : node.preds) {
-      SFormsFastMapDirect mapOut = getFilteredOutMap(node.id, pred.id, dgraph, node.id);
+      SFormsFastMapDirect mapOut;
+      if (pred.index >= 0 && !finallyExits[pred.index]) {
+        // not modified, the map is copied or merged into a new one below
+        mapOut = negIfBranches[pred.index] == node.index ? outNegVarVersions[pred.index] : outVarVersions[pred.index];
+      }
+      else {
+        // finally exits of unreachable nodes may still create phantom versions
+        mapOut = getFilteredOutMap(node.id, pred.id, dgraph, node.id);
+      }
+
       if (mapNew.isEmpty()) {
-        mapNew = mapOut.getCopy();
+        if (mapOut != null) {
+          mapNew = mapOut.getCopy();
+        }
       }
       else {
         mergeMaps(mapNew, mapOut);
       }
     }
 
-    if (extraVarVersions.containsKey(node.id)) {
-      SFormsFastMapDirect mapExtra = extraVarVersions.get(node.id);
+    SFormsFastMapDirect mapExtra = extraVarVersions[node.index];
+    if (mapExtra != null) {
       if (mapNew.isEmpty()) {
         mapNew = mapExtra.getCopy();
       }
@@ -546,7 +590,12 @@ public class SSAUConstructorSparseEx {
       }
     }
 
-    inVarVersions.put(node.id, mapNew);
+    inVarVersions[node.index] = mapNew;
+  }
+
+  private SFormsFastMapDirect getVersions(SFormsFastMapDirect[] versions, String nodeid, DirectGraph dgraph) {
+    int index = dgraph.getNodeIndex(nodeid);
+    return index < 0 ? null : versions[index];
   }
 
   private SFormsFastMapDirect getFilteredOutMap(String nodeid, String predid, DirectGraph dgraph, String destid) {
@@ -555,13 +604,10 @@ public class SSAUConstructorSparseEx {
 
     boolean isFinallyExit = dgraph.mapShortRangeFinallyPaths.containsKey(predid);
 
-    if (nodeid.equals(dgraph.mapNegIfBranch.get(predid))) {
-      if (outNegVarVersions.containsKey(predid)) {
-        mapNew = outNegVarVersions.get(predid).getCopy();
-      }
-    }
-    else if (outVarVersions.containsKey(predid)) {
-      mapNew = outVarVersions.get(predid).getCopy();
+    SFormsFastMapDirect mapOut = getVersions(nodeid.equals(dgraph.mapNegIfBranch.get(predid)) ? outNegVarVersions : outVarVersions,
+                                             predid, dgraph);
+    if (mapOut != null) {
+      mapNew = mapOut.getCopy();
     }
 
     if (isFinallyExit) {
@@ -591,10 +637,10 @@ public class SSAUConstructorSparseEx {
         }
         else {
           if (finwrap.entry.equals(dgraph.mapNegIfBranch.get(finwrap.source))) {
-            map = outNegVarVersions.get(finwrap.source);
+            map = getVersions(outNegVarVersions, finwrap.source, dgraph);
           }
           else {
-            map = outVarVersions.get(finwrap.source);
+            map = getVersions(outVarVersions, finwrap.source, dgraph);
           }
         }
 
@@ -707,13 +753,7 @@ public class SSAUConstructorSparseEx {
       return false;
     }
 
-    for (Entry<Integer, FastSparseSet<Integer>> ent2 : map2.entryList()) {
-      if (!InterpreterUtil.equalObjects(map1.get(ent2.getKey()), ent2.getValue())) {
-        return false;
-      }
-    }
-
-    return true;
+    return map1.equalsMap(map2);
   }
 
 
@@ -746,7 +786,7 @@ public class SSAUConstructorSparseEx {
           map = new SFormsFastMapDirect();
           setCurrentVar(map, varindex, version);
 
-          extraVarVersions.put(dgraph.nodes.getWithKey(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0]).id, map);
+          extraVarVersions[dgraph.getNodeIndex(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0])] = map;
           //ssuversions.createOrGetNode(new VarVersionPair(varindex, version));
           ssuversions.createNode(new VarVersionPair(varindex, version));
         }
@@ -836,11 +876,11 @@ public class SSAUConstructorSparseEx {
     return null;
   }
 
-  public HashMap<VarVersionPair, Integer> getMapVersionFirstRange() {
+  public LongIntMap getMapVersionFirstRange() {
     return mapVersionFirstRange;
   }
 
-  public HashMap<Integer, Integer> getMapFieldVars() {
+  public IntIntMap getMapFieldVars() {
     return mapFieldVars;
   }
 }
@@ -39,6 +39,17 @@ public class VarVersionPair {
     this.version = var.getVersion();
   }
 
+  /**
+   * Packs the pair into a single key, see {@link org.jetbrains.java.decompiler.util.LongIntMap}.
+   */
+  public static long toLong(int var, int version) {
+    return ((long)var << 32) | (version & 0xFFFFFFFFL);
+  }
+
+  public long toLong() {
+    return toLong(var, version);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == this) return true;
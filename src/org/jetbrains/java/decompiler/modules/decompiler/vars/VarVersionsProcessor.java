@@ -28,6 +28,7 @@ import org.jetbrains.java.decompiler.modules.decompiler.stats.RootStatement;
 import org.jetbrains.java.decompiler.struct.StructMethod;
 import org.jetbrains.java.decompiler.struct.gen.VarType;
 import org.jetbrains.java.decompiler.util.FastSparseSetFactory.FastSparseSet;
+import org.jetbrains.java.decompiler.util.LongIntMap;
 
 import java.util.*;
 import java.util.Map.Entry;
@@ -86,7 +87,7 @@ public class VarVersionsProcessor {
       lst.add(set);
     }
 
-    Map<VarVersionPair, Integer> phiVersions = new HashMap<VarVersionPair, Integer>();
+    LongIntMap phiVersions = new LongIntMap();
     for (Set<VarVersionPair> set : lst) {
       int min = Integer.MAX_VALUE;
       for (VarVersionPair paar : set) {
@@ -96,14 +97,14 @@ public class VarVersionsProcessor {
       }
 
       for (VarVersionPair paar : set) {
-        phiVersions.put(new VarVersionPair(paar.var, paar.version), min);
+        phiVersions.put(paar.toLong(), min);
       }
     }
 
     updateVersions(graph, phiVersions);
   }
 
-  public static void updateVersions(DirectGraph graph, final Map<VarVersionPair, Integer> versions) {
+  public static void updateVersions(DirectGraph graph, final LongIntMap versions) {
     graph.iterateExprents(new DirectGraph.ExprentIterator() {
       @Override
       public int processExprent(Exprent exprent) {
@@ -113,8 +114,8 @@ public class VarVersionsProcessor {
         for (Exprent expr : lst) {
           if (expr.type == Exprent.EXPRENT_VAR) {
             VarExprent var = (VarExprent)expr;
-            Integer version = versions.get(new VarVersionPair(var));
-            if (version != null) {
+            int version = versions.get(VarVersionPair.toLong(var.getIndex(), var.getVersion()), -1);
+            if (version >= 0) {
               var.setVersion(version);
             }
           }
@@ -170,7 +171,7 @@ public class VarVersionsProcessor {
 
     boolean is_method_static = mt.hasModifier(CodeConstants.ACC_STATIC);
 
-    Map<VarVersionPair, Integer> mapMergedVersions = new HashMap<VarVersionPair, Integer>();
+    LongIntMap mapMergedVersions = new LongIntMap();
 
     for (Entry<Integer, Set<Integer>> ent : mapVarVersions.entrySet()) {
 
@@ -201,7 +202,7 @@ public class VarVersionsProcessor {
                              VarType.getCommonMinType(firstMaxType, secondMaxType);
 
               mapExprentMaxTypes.put(firstPair, type);
-              mapMergedVersions.put(secondPair, firstPair.version);
+              mapMergedVersions.put(secondPair.toLong(), firstPair.version);
               mapExprentMaxTypes.remove(secondPair);
               mapExprentMinTypes.remove(secondPair);
 
@@ -233,7 +234,7 @@ public class VarVersionsProcessor {
 
     CounterContainer counters = DecompilerContext.getCounterContainer();
 
-    final Map<VarVersionPair, Integer> mapVarPaar = new HashMap<VarVersionPair, Integer>();
+    final LongIntMap mapVarPaar = new LongIntMap(mapExprentMinTypes.size());
     Map<Integer, VarVersionPair> mapOriginalVarIndices = new HashMap<Integer, VarVersionPair>();
     mapOriginalVarIndices.putAll(this.mapOriginalVarIndices);
 
@@ -260,7 +261,7 @@ public class VarVersionsProcessor {
           mapFinalVars.put(newVar, mapFinalVars.remove(pair));
         }
 
-        mapVarPaar.put(pair, newIndex);
+        mapVarPaar.put(pair.toLong(), newIndex);
         mapOriginalVarIndices.put(newIndex, pair);
       }
     }
@@ -275,8 +276,8 @@ public class VarVersionsProcessor {
         for (Exprent expr : lst) {
           if (expr.type == Exprent.EXPRENT_VAR) {
             VarExprent newVar = (VarExprent)expr;
-            Integer newVarIndex = mapVarPaar.get(new VarVersionPair(newVar));
-            if (newVarIndex != null) {
+            int newVarIndex = mapVarPaar.get(VarVersionPair.toLong(newVar.getIndex(), newVar.getVersion()), -1);
+            if (newVarIndex >= 0) {
               newVar.setIndex(newVarIndex);
               newVar.setVersion(0);
             }
@@ -15,31 +15,127 @@
  */
 package org.jetbrains.java.decompiler.struct;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.struct.file.FileStructEntry;
 import org.jetbrains.java.decompiler.struct.file.StructEntry;
 import org.jetbrains.java.decompiler.struct.file.ZipStructEntry;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipFile;
 
 public class FileStructContext implements StructContext {
 
-  protected final Map<String, StructEntry> entries = new HashMap<>();
+  // classes are registered from several threads while scanning directories and archives
+  protected final Map<String, StructEntry> entries = new ConcurrentHashMap<>();
   private final Set<String> entryKeyView = Collections.unmodifiableSet(this.entries.keySet());
 
-  protected Map<String, StructClass> classes = new HashMap<>();
-  private Map<String, StructClass> classesView = Collections.unmodifiableMap(this.classes);
+  protected Map<String, StructClass> classes = new ConcurrentHashMap<>();
+  private final Map<String, StructClass> classesView = new ClassesView();
 
+  // library classes found by scanning directories and archives, parsed on first use
+  protected final Map<String, String> libraryClasses = new ConcurrentHashMap<>();
+  private Cache<String, StructClass> libraryCache = CacheBuilder.newBuilder().build();
+  private boolean lazyLibraries = true;
+  private long libraryCacheSize;
+  private boolean softLibraryCache;
+
+  private int threads;
+
+  // classes not found in this context are looked up in the parent, which isn't closed with this context
+  private final StructContext parent;
+
+  public FileStructContext() {
+    this(null);
+  }
+
+  /**
+   * Creates a context whose classes are added on top of the classes of the parent context, e.g. a shared set
+   * of libraries. Classes of this context hide classes of the parent with the same name.
+   */
+  public FileStructContext(StructContext parent) {
+    this.parent = parent;
+  }
+
+  public StructContext getParent() {
+    return this.parent;
+  }
+
+  /**
+   * Sets the number of threads used to parse the classes of a scanned directory or archive, all available processors if 0.
+   */
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Sets whether the library classes of scanned directories and archives are only registered by name
+   * and parsed when they are requested for the first time (the default).
+   */
+  public void setLazyLibraries(boolean lazyLibraries) {
+    this.lazyLibraries = lazyLibraries;
+  }
+
+  /**
+   * Limits the number of parsed library classes that are kept, 0 keeps all of them.
+   */
+  public void setLibraryCacheSize(long libraryCacheSize) {
+    this.libraryCacheSize = libraryCacheSize;
+    this.libraryCache = buildLibraryCache();
+  }
+
+  /**
+   * Sets whether parsed library classes are only softly referenced and may be parsed again after garbage collection.
+   */
+  public void setSoftLibraryCache(boolean softLibraryCache) {
+    this.softLibraryCache = softLibraryCache;
+    this.libraryCache = buildLibraryCache();
+  }
+
+  private Cache<String, StructClass> buildLibraryCache() {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    if (this.libraryCacheSize > 0) {
+      builder.maximumSize(this.libraryCacheSize);
+    }
+    if (this.softLibraryCache) {
+      builder.softValues();
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns all classes of the context. Library classes that have not been parsed yet can be looked up,
+   * but are not iterated.
+   */
   @Override
   public Map<String, StructClass> getClasses() {
     return this.classesView;
@@ -47,21 +143,72 @@ public class FileStructContext implements StructContext {
 
   @Override
   public StructClass getClass(String name) {
-    return this.classes.get(name);
+    StructClass structClass = this.classes.get(name);
+    if (structClass == null) {
+      String source = this.libraryClasses.get(name);
+      if (source != null) {
+        structClass = loadLibraryClass(name, source);
+      }
+      else if (this.parent != null) {
+        structClass = this.parent.getClass(name);
+      }
+    }
+    return structClass;
+  }
+
+  @Override
+  public boolean isOwnClass(String name) {
+    // library classes are never own, own classes of the parent are not iterated either
+    StructClass structClass = this.classes.get(name);
+    return structClass != null && structClass.isOwn();
+  }
+
+  private StructClass loadLibraryClass(String name, String source) {
+    try {
+      StructClass structClass = this.libraryCache.get(name, () -> new StructClass(this.entries.get(source).readBuffer(), false, this, source));
+      if (!name.equals(structClass.qualifiedName)) {
+        // the class is not stored at the location matching its name
+        this.libraryCache.invalidate(name);
+        return null;
+      }
+      return structClass;
+    }
+    catch (ExecutionException ex) {
+      throw new RuntimeException(ex.getCause());
+    }
+    catch (UncheckedExecutionException ex) {
+      throw Throwables.propagate(ex.getCause());
+    }
   }
 
   @Override
   public byte[] readClass(String className) throws IOException {
     StructClass structClass = this.classes.get(className);
-    return structClass != null ? this.entries.get(structClass.source).read() : null;
+    String source = structClass != null ? structClass.source : this.libraryClasses.get(className);
+    if (source == null) {
+      return this.parent != null ? this.parent.readClass(className) : null;
+    }
+    return this.entries.get(source).read();
   }
 
   @Override
   public byte[] readClass(StructClass structClass) throws IOException {
+    if (structClass.context != this && structClass.context != null) {
+      return structClass.context.readClass(structClass);
+    }
     StructEntry entry = this.entries.get(structClass.source);
     return entry != null ? entry.read() : null;
   }
 
+  @Override
+  public ByteBuffer readClassBuffer(StructClass structClass) throws IOException {
+    if (structClass.context != this && structClass.context != null) {
+      return structClass.context.readClassBuffer(structClass);
+    }
+    StructEntry entry = this.entries.get(structClass.source);
+    return entry != null ? entry.readBuffer() : null;
+  }
+
   @Override
   public Set<String> getResources() {
     return this.entryKeyView;
@@ -82,16 +229,127 @@ public class FileStructContext implements StructContext {
   @Override
   public void reloadContext() throws IOException {
     Collection<StructClass> oldClasses = this.classes.values();
-    Map<String, StructClass> newClasses = new HashMap<>();
+    Map<String, StructClass> newClasses = new ConcurrentHashMap<>();
 
     for (StructClass cl : oldClasses) {
-      byte[] bytes = readClass(cl);
-      StructClass newCl = new StructClass(bytes, cl.isOwn(), cl.context, cl.source);
+      ByteBuffer buffer = readClassBuffer(cl);
+      StructClass newCl = new StructClass(buffer, cl.isOwn(), cl.context, cl.source);
       newClasses.put(newCl.qualifiedName, newCl);
     }
 
     this.classes = newClasses;
-    this.classesView = Collections.unmodifiableMap(newClasses);
+    this.libraryCache.invalidateAll();
+  }
+
+  /**
+   * Registers a file that has been added to a scanned directory under its relative source, e.g. a new nested class.
+   * Returns the name of its class, if any, which can be passed on to
+   * {@link org.jetbrains.java.decompiler.main.Fernflower#updateClasses} together with the result of
+   * {@link #reloadEntries}.
+   */
+  public Set<String> addEntry(String source, Path path, boolean own) throws IOException {
+    if (!source.endsWith(".class")) {
+      if (own) {
+        addResourceFile(source, path);
+      }
+      return Collections.emptySet();
+    }
+
+    StructEntry entry = createFileEntry(source, path);
+    addResource(source, entry);
+    if (!own && this.lazyLibraries) {
+      String name = source.substring(0, source.length() - ".class".length());
+      addLibraryClass(name, source);
+      return Collections.singleton(name);
+    }
+    return Collections.singleton(readClass(source, entry, own).qualifiedName);
+  }
+
+  /**
+   * Parses the classes of the given registered entries again after their files have changed, and removes the classes
+   * of entries whose file doesn't exist anymore. Returns the names of all classes that have been replaced or removed,
+   * which can be passed on to {@link org.jetbrains.java.decompiler.main.Fernflower#updateClasses}. If one of the classes
+   * can't be parsed, none of them is replaced.
+   *
+   * @throws IllegalArgumentException if one of the classes hasn't been registered, new files must be added with
+   *                                  {@link #addEntry} instead
+   */
+  public Set<String> reloadEntries(Collection<String> sources) throws IOException {
+    // checked first, so that nothing is reloaded if some of them are missing
+    for (String source : sources) {
+      if (source.endsWith(".class") && !this.entries.containsKey(source)) {
+        throw new IllegalArgumentException("Class " + source + " is not registered");
+      }
+    }
+
+    Map<String, StructClass> classesBySource = new HashMap<>();
+    for (StructClass cl : this.classes.values()) {
+      classesBySource.put(cl.source, cl);
+    }
+    Map<String, String> librariesBySource = new HashMap<>();
+    for (Map.Entry<String, String> entry : this.libraryClasses.entrySet()) {
+      librariesBySource.put(entry.getValue(), entry.getKey());
+    }
+
+    // all classes are parsed before any of them is replaced, so that a file that can't be parsed (e.g. because it is
+    // still being written) leaves the context as it was
+    Map<String, StructClass> reloaded = new HashMap<>();
+    Set<String> removed = new HashSet<>();
+    for (String source : sources) {
+      StructEntry entry = this.entries.get(source);
+      if (librariesBySource.containsKey(source) || entry == null || !source.endsWith(".class")) {
+        continue;
+      }
+
+      ByteBuffer buffer;
+      try {
+        buffer = entry.readBuffer();
+      }
+      catch (NoSuchFileException ex) {
+        removed.add(source);
+        continue;
+      }
+
+      StructClass old = classesBySource.get(source);
+      reloaded.put(source, new StructClass(buffer, old == null || old.isOwn(), this, source));
+    }
+
+    Set<String> names = new HashSet<>();
+    for (StructClass structClass : reloaded.values()) {
+      StructClass current = this.classes.get(structClass.qualifiedName);
+      if (!names.add(structClass.qualifiedName) || this.libraryClasses.containsKey(structClass.qualifiedName) ||
+          current != null && reloaded.get(current.source) == null && !removed.contains(current.source)) {
+        throw new IllegalArgumentException("Duplicate class: " + structClass.qualifiedName);
+      }
+    }
+
+    Set<String> changed = new HashSet<>();
+    for (String source : sources) {
+      String library = librariesBySource.get(source);
+      if (library != null) {
+        // parsed again on next use
+        this.libraryCache.invalidate(library);
+        changed.add(library);
+        continue;
+      }
+
+      StructClass old = classesBySource.get(source);
+      if (old != null) {
+        this.classes.remove(old.qualifiedName);
+        changed.add(old.qualifiedName);
+      }
+
+      StructEntry entry = removed.contains(source) ? this.entries.remove(source) : null;
+      if (entry != null) {
+        entry.close();
+      }
+    }
+    for (StructClass structClass : reloaded.values()) {
+      this.classes.put(structClass.qualifiedName, structClass);
+      changed.add(structClass.qualifiedName);
+    }
+
+    return changed;
   }
 
   @Override
@@ -156,7 +414,86 @@ public class FileStructContext implements StructContext {
   }
 
   protected void scanDirectory(Path path, boolean own) throws IOException {
-    throw new UnsupportedOperationException();
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(path)) {
+      files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+
+    Map<String, StructEntry> classEntries = new LinkedHashMap<>();
+    for (Path file : files) {
+      String source = path.relativize(file).toString().replace(File.separatorChar, '/');
+      if (source.endsWith(".class")) {
+        StructEntry entry = createFileEntry(source, file);
+        addResource(source, entry);
+        classEntries.put(source, entry);
+      } else if (own) {
+        addResourceFile(source, file);
+      }
+    }
+
+    readClasses(classEntries, own);
+  }
+
+  /**
+   * Parses the classes of the given entries in parallel, or registers them by name if they are lazily loaded
+   * library classes. The entries must have been registered already.
+   */
+  protected void readClasses(Map<String, StructEntry> classEntries, boolean own) throws IOException {
+    if (!own && this.lazyLibraries) {
+      for (String source : classEntries.keySet()) {
+        addLibraryClass(source.substring(0, source.length() - ".class".length()), source);
+      }
+      return;
+    }
+
+    if (classEntries.size() <= 1) {
+      for (Map.Entry<String, StructEntry> entry : classEntries.entrySet()) {
+        readClass(entry.getKey(), entry.getValue(), own);
+      }
+      return;
+    }
+
+    int threads = this.threads > 0 ? this.threads : Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, classEntries.size()), new ThreadFactoryBuilder()
+      .setNameFormat("Class reader %d")
+      .setDaemon(true)
+      .build());
+
+    // parsing reads the options of the decompiler
+    DecompilerContext context = DecompilerContext.getCurrentContext();
+    List<Future<?>> futures = new ArrayList<>(classEntries.size());
+    try {
+      for (Map.Entry<String, StructEntry> entry : classEntries.entrySet()) {
+        futures.add(executor.submit(() -> {
+          DecompilerContext.setCurrentContext(context);
+          try {
+            readClass(entry.getKey(), entry.getValue(), own);
+          }
+          finally {
+            DecompilerContext.setCurrentContext(null);
+          }
+          return null;
+        }));
+      }
+
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ex);
+    }
+    catch (ExecutionException ex) {
+      Throwables.propagateIfInstanceOf(ex.getCause(), IOException.class);
+      throw Throwables.propagate(ex.getCause());
+    }
+    finally {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+      executor.shutdownNow();
+    }
   }
 
   protected void scanZipFile(Path path, boolean own) throws IOException {
@@ -164,8 +501,11 @@ public class FileStructContext implements StructContext {
 
     boolean success = false;
 
+    Map<String, StructEntry> classEntries = new LinkedHashMap<>();
+
     ZipFile zip = new ZipFile(path.toFile());
     try {
+      // register all entries first, the classes are parsed in parallel afterwards
       Enumeration<? extends ZipEntry> entries = zip.entries();
       while (entries.hasMoreElements()) {
         ZipEntry entry = entries.nextElement();
@@ -175,7 +515,7 @@ public class FileStructContext implements StructContext {
 
         final String name = entry.getName();
         if (name.endsWith(".class")) {
-          addZipClass(name, zip, entry, own);
+          classEntries.put(name, addZipResource(name, zip, entry));
         } else if (own) {
           addZipResource(name, zip, entry);
         }
@@ -187,6 +527,8 @@ public class FileStructContext implements StructContext {
         zip.close();
       }
     }
+
+    readClasses(classEntries, own);
   }
 
   protected StructEntry addZipClass(String source, ZipFile zip, ZipEntry entry, boolean own) throws IOException {
@@ -202,28 +544,48 @@ public class FileStructContext implements StructContext {
     return structEntry;
   }
 
-  protected StructEntry createZipEntry(ZipFile zip, ZipEntry entry) {
+  protected StructEntry createZipEntry(ZipFile zip, ZipEntry entry) throws IOException {
     return new ZipStructEntry(zip, entry);
   }
 
-  protected void readClass(String source, StructEntry entry, boolean own) throws IOException {
-    StructClass structClass = new StructClass(entry.read(), own, this, source);
+  protected StructClass readClass(String source, StructEntry entry, boolean own) throws IOException {
+    StructClass structClass = new StructClass(entry.readBuffer(), own, this, source);
 
-    StructClass current = this.classes.get(structClass.qualifiedName);
-    if (current != null) {
-      throw new IllegalArgumentException("Duplicate class: " + current.qualifiedName);
+    StructClass current = this.classes.putIfAbsent(structClass.qualifiedName, structClass);
+    if (current != null || this.libraryClasses.containsKey(structClass.qualifiedName)) {
+      throw new IllegalArgumentException("Duplicate class: " + structClass.qualifiedName);
     }
+    return structClass;
+  }
 
-    this.classes.put(structClass.qualifiedName, structClass);
+  protected void addLibraryClass(String name, String source) {
+    if (this.classes.containsKey(name) || this.libraryClasses.putIfAbsent(name, source) != null) {
+      throw new IllegalArgumentException("Duplicate class: " + name);
+    }
   }
 
   protected void addResource(String source, StructEntry entry) throws IOException {
-    StructEntry current = this.entries.get(source);
+    StructEntry current = this.entries.putIfAbsent(source, entry);
     if (current != null) {
       throw new IllegalArgumentException("Cannot register " + entry + " as " + source + ", already registered to " + current);
     }
+  }
+
+  private class ClassesView extends AbstractMap<String, StructClass> {
+    @Override
+    public StructClass get(Object key) {
+      return key instanceof String ? FileStructContext.this.getClass((String)key) : null;
+    }
 
-    this.entries.put(source, entry);
+    @Override
+    public boolean containsKey(Object key) {
+      return classes.containsKey(key) || libraryClasses.containsKey(key) || parent != null && parent.getClasses().containsKey(key);
+    }
+
+    @Override
+    public Set<Entry<String, StructClass>> entrySet() {
+      return Collections.unmodifiableMap(classes).entrySet();
+    }
   }
 
 }
@@ -15,9 +15,20 @@
  */
 package org.jetbrains.java.decompiler.struct;
 
+import java.io.IOException;
+
 public interface IDecompiledData {
 
   String getClassEntryName(StructClass cl, String entryname);
 
   String getClassContent(StructClass cl);
+
+  default boolean writeClassContent(StructClass cl, Appendable out) throws IOException {
+    String content = getClassContent(cl);
+    if (content == null) {
+      return false;
+    }
+    out.append(content);
+    return true;
+  }
 }
@@ -0,0 +1,59 @@
+package org.jetbrains.java.decompiler.struct;
+
+import org.jetbrains.java.decompiler.struct.file.MappedZipFile;
+import org.jetbrains.java.decompiler.struct.file.MappedZipStructEntry;
+import org.jetbrains.java.decompiler.struct.file.StructEntry;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * {@link FileStructContext} that reads archives through memory-mapped buffers, so that their stored entries
+ * are parsed without copying them to the heap. Compressed archive entries are still inflated, and loose class
+ * files are read into heap buffers, as a mapping per small file costs more than it saves and keeps the file
+ * locked on some platforms.
+ */
+public class MappedFileStructContext extends FileStructContext {
+
+  private final Map<String, MappedZipFile> mappedZips = new ConcurrentHashMap<>();
+
+  public MappedFileStructContext() { }
+
+  public MappedFileStructContext(StructContext parent) {
+    super(parent);
+  }
+
+  @Override
+  protected StructEntry createZipEntry(ZipFile zip, ZipEntry entry) throws IOException {
+    if (entry.getMethod() != ZipEntry.STORED) {
+      return super.createZipEntry(zip, entry);
+    }
+
+    MappedZipFile mapped = this.mappedZips.get(zip.getName());
+    if (mapped == null) {
+      mapped = MappedZipFile.map(Paths.get(zip.getName()));
+      MappedZipFile current = this.mappedZips.putIfAbsent(zip.getName(), mapped);
+      if (current != null) {
+        mapped = current;
+      }
+    }
+
+    return new MappedZipStructEntry(zip, entry, mapped);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    }
+    finally {
+      // the mappings are only released once they are unreachable
+      this.mappedZips.clear();
+    }
+  }
+
+}
@@ -30,6 +30,7 @@ import org.jetbrains.java.decompiler.util.InterpreterUtil;
 import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -64,6 +65,7 @@ public class StructClass extends StructMember {
   private final boolean own;
   private final int minorVersion;
   private final int majorVersion;
+  private final int size;
   private final int[] interfaces;
   private final String[] interfaceNames;
   private final VBStyleCollection<StructField, String> fields;
@@ -71,12 +73,17 @@ public class StructClass extends StructMember {
   private GenericClassDescriptor signature = null;
   public final Map<String, Map<Integer, String>> enumSwitchMap = new HashMap<String, Map<Integer, String>>();
 
-  private ConstantPool pool;
+  private volatile ConstantPool pool;
+  private volatile ByteBuffer buffer;
 
   public StructClass(byte[] bytes, boolean own, StructContext context, String source) throws IOException {
     this(new DataInputFullStream(bytes), own, context, source);
   }
 
+  public StructClass(ByteBuffer buffer, boolean own, StructContext context, String source) throws IOException {
+    this(new DataInputFullStream(buffer), own, context, source);
+  }
+
   public StructClass(DataInputFullStream in, boolean own, StructContext context, String source) throws IOException {
     this.context = context;
     this.source = source;
@@ -123,6 +130,8 @@ public class StructClass extends StructMember {
     // attributes
     attributes = readAttributes(in, pool);
 
+    size = in.getOffset();
+
     releaseResources();
   }
 
@@ -148,11 +157,39 @@ public class StructClass extends StructMember {
 
   public void releaseResources() {
     pool = null;
+    buffer = null;
+  }
+
+  /**
+   * Returns the class file contents if they have been kept by {@link #loadBuffer()}, {@code null} otherwise.
+   */
+  public ByteBuffer getLoadedBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Reads the class file and keeps it until {@link #releaseResources()}, so that the bytecode of all methods
+   * is loaded from a single read while the class is processed.
+   */
+  public ByteBuffer loadBuffer() throws IOException {
+    ByteBuffer buffer = this.buffer;
+    if (buffer == null) {
+      this.buffer = buffer = context.readClassBuffer(this);
+    }
+    return buffer;
+  }
+
+  /**
+   * Returns the size of the class file in bytes.
+   */
+  public int getSize() {
+    return size;
   }
 
   public ConstantPool getPool() {
+    ConstantPool pool = this.pool;
     if (pool == null) {
-      pool = LazyLoader.loadPool(this);
+      this.pool = pool = LazyLoader.loadPool(this);
     }
     return pool;
   }
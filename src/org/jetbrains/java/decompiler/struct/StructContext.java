@@ -3,6 +3,7 @@ package org.jetbrains.java.decompiler.struct;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Set;
 
@@ -14,12 +15,25 @@ public interface StructContext extends Closeable {
     return getClasses().get(name);
   }
 
+  /**
+   * Returns whether the class is one of the classes to be decompiled, without loading library classes.
+   */
+  default boolean isOwnClass(String name) {
+    StructClass structClass = getClasses().get(name);
+    return structClass != null && structClass.isOwn();
+  }
+
   byte[] readClass(String className) throws IOException;
 
   default byte[] readClass(StructClass structClass) throws IOException {
     return readClass(structClass.qualifiedName);
   }
 
+  default ByteBuffer readClassBuffer(StructClass structClass) throws IOException {
+    byte[] bytes = readClass(structClass);
+    return bytes != null ? ByteBuffer.wrap(bytes) : null;
+  }
+
   Set<String> getResources();
 
   InputStream openResource(String resource) throws IOException;
@@ -58,9 +58,11 @@ public class StructMethod extends StructMember {
   private boolean containsCode = false;
   private int localVariables = 0;
   private int codeLength = 0;
+  private int codeOffset = 0;
   private int codeFullLength = 0;
   private InstructionSequence seq;
   private boolean expanded = false;
+  private int instructionCount = -1;
   private VBStyleCollection<StructGeneralAttribute, String> codeAttributes;
   private IVariableNameProvider renamer;
 
@@ -97,6 +99,7 @@ public class StructMethod extends StructMember {
         in.discard(6);
         localVariables = in.readUnsignedShort();
         codeLength = in.readInt();
+        codeOffset = in.getOffset();
         in.discard(codeLength);
         int excLength = in.readUnsignedShort();
         in.discard(excLength * 8);
@@ -119,8 +122,9 @@ public class StructMethod extends StructMember {
 
   public void expandData() throws IOException {
     if (containsCode && !expanded) {
-      byte[] code = LazyLoader.loadBytecode(this, codeFullLength);
-      seq = parseBytecode(new DataInputFullStream(code), codeLength, classStruct.getPool());
+      DataInputFullStream code = LazyLoader.loadBytecode(this, codeOffset, codeFullLength);
+      seq = parseBytecode(code, codeLength, classStruct.getPool());
+      instructionCount = seq.length();
       loadRenamer();
       expanded = true;
     }
@@ -412,6 +416,13 @@ public class StructMethod extends StructMember {
     return seq;
   }
 
+  /**
+   * Returns the number of instructions of the code, or -1 if the code hasn't been read yet.
+   */
+  public int getInstructionCount() {
+    return instructionCount;
+  }
+
   public GenericMethodDescriptor getSignature() {
     return signature;
   }
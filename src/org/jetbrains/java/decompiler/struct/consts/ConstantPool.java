@@ -15,6 +15,8 @@
  */
 package org.jetbrains.java.decompiler.struct.consts;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.jetbrains.java.decompiler.code.CodeConstants;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.modules.renamer.PoolInterceptor;
@@ -26,83 +28,85 @@ import org.jetbrains.java.decompiler.util.DataInputFullStream;
 
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The constant pool of a class. The entries are kept in primitive arrays and turned into {@link PooledConstant}
+ * objects only when they are requested. UTF-8 entries are decoded on first use and interned globally, as class names
+ * and descriptors repeat across all classes of an archive.
+ */
 public class ConstantPool implements NewClassNameBuilder {
 
   public static final int FIELD = 1;
   public static final int METHOD = 2;
 
-  private final List<PooledConstant> pool = new ArrayList<PooledConstant>();
+  private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
+  private final byte[] tags;
+  // Integer, Float, Long and Double: the raw bits, Utf8: the offset in the buffer and the length,
+  // other entries: the indices of the referenced entries
+  private final long[] values;
+  private final byte[] utf;
+  private final String[] strings;
+  private final AtomicReferenceArray<PooledConstant> constants;
   private final PoolInterceptor interceptor;
 
 
   public ConstantPool(DataInputStream in) throws IOException {
     int size = in.readUnsignedShort();
-    int[] pass = new int[size];
+    tags = new byte[size];
+    values = new long[size];
 
-    // first dummy constant
-    pool.add(null);
+    byte[] buffer = new byte[Math.max(size, 16) * 16];
+    int length = 0;
 
-    // first pass: read the elements
     for (int i = 1; i < size; i++) {
       byte tag = (byte)in.readUnsignedByte();
+      tags[i] = tag;
 
       switch (tag) {
         case CodeConstants.CONSTANT_Utf8:
-          pool.add(new PrimitiveConstant(CodeConstants.CONSTANT_Utf8, in.readUTF()));
+          int utfLength = in.readUnsignedShort();
+          if (buffer.length - length < utfLength) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + utfLength));
+          }
+          in.readFully(buffer, length, utfLength);
+          checkUtf(buffer, length, utfLength);
+          values[i] = ((long)length << 16) | utfLength;
+          length += utfLength;
           break;
         case CodeConstants.CONSTANT_Integer:
-          pool.add(new PrimitiveConstant(CodeConstants.CONSTANT_Integer, new Integer(in.readInt())));
-          break;
         case CodeConstants.CONSTANT_Float:
-          pool.add(new PrimitiveConstant(CodeConstants.CONSTANT_Float, new Float(in.readFloat())));
+          values[i] = in.readInt();
           break;
         case CodeConstants.CONSTANT_Long:
-          pool.add(new PrimitiveConstant(CodeConstants.CONSTANT_Long, new Long(in.readLong())));
-          pool.add(null);
-          i++;
-          break;
         case CodeConstants.CONSTANT_Double:
-          pool.add(new PrimitiveConstant(CodeConstants.CONSTANT_Double, new Double(in.readDouble())));
-          pool.add(null);
+          values[i] = in.readLong();
           i++;
           break;
         case CodeConstants.CONSTANT_Class:
         case CodeConstants.CONSTANT_String:
         case CodeConstants.CONSTANT_MethodType:
-          pool.add(new PrimitiveConstant(tag, in.readUnsignedShort()));
-          pass[i] = 1;
+          values[i] = in.readUnsignedShort();
           break;
         case CodeConstants.CONSTANT_Fieldref:
         case CodeConstants.CONSTANT_Methodref:
         case CodeConstants.CONSTANT_InterfaceMethodref:
         case CodeConstants.CONSTANT_NameAndType:
         case CodeConstants.CONSTANT_InvokeDynamic:
-          pool.add(new LinkConstant(tag, in.readUnsignedShort(), in.readUnsignedShort()));
-          if (tag == CodeConstants.CONSTANT_NameAndType) {
-            pass[i] = 1;
-          }
-          else {
-            pass[i] = 2;
-          }
+          values[i] = ((long)in.readUnsignedShort() << 16) | in.readUnsignedShort();
           break;
         case CodeConstants.CONSTANT_MethodHandle:
-          pool.add(new LinkConstant(tag, in.readUnsignedByte(), in.readUnsignedShort()));
-          pass[i] = 3;
+          values[i] = ((long)in.readUnsignedByte() << 16) | in.readUnsignedShort();
           break;
       }
     }
 
-    // resolving complex pool elements
-    for (int passIndex = 1; passIndex <= 3; passIndex++) {
-      for (int i = 1; i < size; i++) {
-        if (pass[i] == passIndex) {
-          pool.get(i).resolveConstant(this);
-        }
-      }
-    }
+    utf = length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    strings = new String[size];
+    constants = new AtomicReferenceArray<PooledConstant>(size);
 
     // get global constant pool interceptor instance, if any available
     interceptor = DecompilerContext.getPoolInterceptor();
@@ -142,7 +146,7 @@ public class ConstantPool implements NewClassNameBuilder {
   }
 
   public int size() {
-    return pool.size();
+    return tags.length;
   }
 
   public String[] getClassElement(int elementType, String className, int nameIndex, int descriptorIndex) {
@@ -165,7 +169,119 @@ public class ConstantPool implements NewClassNameBuilder {
   }
 
   public PooledConstant getConstant(int index) {
-    return pool.get(index);
+    PooledConstant constant = constants.get(index);
+    if (constant == null && tags[index] != 0) {
+      constant = createConstant(index);
+      if (!constants.compareAndSet(index, null, constant)) {
+        constant = constants.get(index);
+      }
+    }
+    return constant;
+  }
+
+  private PooledConstant createConstant(int index) {
+    int tag = tags[index];
+    long value = values[index];
+
+    switch (tag) {
+      case CodeConstants.CONSTANT_Utf8:
+        return new PrimitiveConstant(tag, getString(index));
+      case CodeConstants.CONSTANT_Integer:
+        return new PrimitiveConstant(tag, Integer.valueOf((int)value));
+      case CodeConstants.CONSTANT_Float:
+        return new PrimitiveConstant(tag, Float.valueOf(Float.intBitsToFloat((int)value)));
+      case CodeConstants.CONSTANT_Long:
+        return new PrimitiveConstant(tag, Long.valueOf(value));
+      case CodeConstants.CONSTANT_Double:
+        return new PrimitiveConstant(tag, Double.valueOf(Double.longBitsToDouble(value)));
+      case CodeConstants.CONSTANT_Class:
+      case CodeConstants.CONSTANT_String:
+      case CodeConstants.CONSTANT_MethodType:
+        PrimitiveConstant cn = new PrimitiveConstant(tag, getString((int)value));
+        cn.index = (int)value;
+        return cn;
+      default:
+        int index1 = (int)(value >>> 16), index2 = (int)(value & 0xFFFF);
+        LinkConstant ln;
+        if (tag == CodeConstants.CONSTANT_NameAndType) {
+          ln = new LinkConstant(tag, null, getString(index1), getString(index2));
+        }
+        else {
+          // the referenced constants are used as read, the interceptor is applied to the result only
+          LinkConstant ref = (LinkConstant)getConstant(index2);
+          String className = tag == CodeConstants.CONSTANT_MethodHandle ? ref.classname :
+                             tag == CodeConstants.CONSTANT_InvokeDynamic ? null : getClassName(index1);
+          ln = new LinkConstant(tag, className, ref.elementname, ref.descriptor);
+        }
+        ln.index1 = index1;
+        ln.index2 = index2;
+        return ln;
+    }
+  }
+
+  private String getClassName(int index) {
+    return getString((int)values[index]);
+  }
+
+  /**
+   * Returns the decoded value of a UTF-8 entry.
+   */
+  public String getString(int index) {
+    String value = strings[index];
+    if (value == null) {
+      long entry = values[index];
+      value = STRINGS.intern(decodeUtf(utf, (int)(entry >>> 16), (int)(entry & 0xFFFF)));
+      strings[index] = value; // strings are immutable, racing threads store the same instance
+    }
+    return value;
+  }
+
+  // the entries are decoded lazily, so malformed ones are rejected while reading the pool, as DataInput.readUTF would
+  private static void checkUtf(byte[] bytes, int offset, int length) throws UTFDataFormatException {
+    int end = offset + length;
+    for (int i = offset; i < end; ) {
+      int b = bytes[i] & 0xFF;
+      if (b < 0x80) {
+        i++;
+      }
+      else if ((b & 0xE0) == 0xC0 && i + 1 < end && (bytes[i + 1] & 0xC0) == 0x80) {
+        i += 2;
+      }
+      else if ((b & 0xF0) == 0xE0 && i + 2 < end && (bytes[i + 1] & 0xC0) == 0x80 && (bytes[i + 2] & 0xC0) == 0x80) {
+        i += 3;
+      }
+      else {
+        throw new UTFDataFormatException("Malformed UTF-8 constant at offset " + (i - offset));
+      }
+    }
+  }
+
+  // modified UTF-8 as written by DataOutput.writeUTF, checked by checkUtf
+  private static String decodeUtf(byte[] bytes, int offset, int length) {
+    char[] chars = new char[length];
+    int count = 0;
+
+    int end = offset + length;
+    for (int i = offset; i < end; ) {
+      int b = bytes[i] & 0xFF;
+      if (b < 0x80) {
+        chars[count++] = (char)b;
+        i++;
+      }
+      else if ((b & 0xE0) == 0xC0 && i + 1 < end) {
+        chars[count++] = (char)(((b & 0x1F) << 6) | (bytes[i + 1] & 0x3F));
+        i += 2;
+      }
+      else if ((b & 0xF0) == 0xE0 && i + 2 < end) {
+        chars[count++] = (char)(((b & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F));
+        i += 3;
+      }
+      else {
+        throw new IllegalArgumentException("Malformed UTF-8 constant at offset " + i);
+      }
+    }
+
+    return new String(chars, 0, count);
   }
 
   public PrimitiveConstant getPrimitiveConstant(int index) {
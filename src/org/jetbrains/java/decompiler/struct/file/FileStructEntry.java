@@ -9,7 +9,7 @@ import java.nio.file.Path;
 
 public class FileStructEntry implements StructEntry {
 
-  private final Path path;
+  protected final Path path;
 
   public FileStructEntry(Path path) {
     this.path = path;
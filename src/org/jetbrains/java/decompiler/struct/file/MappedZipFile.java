@@ -0,0 +1,129 @@
+package org.jetbrains.java.decompiler.struct.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memory-mapped view of a zip file that gives direct access to the data of stored (uncompressed) entries.
+ * Compressed entries, ZIP64 archives and archives larger than 2 GB are not indexed and have to be read
+ * through {@link java.util.zip.ZipFile}.
+ */
+public class MappedZipFile {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_HEADER_SIGNATURE = 0x06054b50;
+
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int END_HEADER_SIZE = 22;
+
+  private final ByteBuffer buffer;
+  private final Map<String, Integer> storedEntries;
+
+  private MappedZipFile(ByteBuffer buffer, Map<String, Integer> storedEntries) {
+    this.buffer = buffer;
+    this.storedEntries = storedEntries;
+  }
+
+  public static MappedZipFile map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        return new MappedZipFile(null, Collections.<String, Integer>emptyMap());
+      }
+
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+      return new MappedZipFile(buffer, indexStoredEntries(buffer));
+    }
+  }
+
+  /**
+   * Returns the contents of the stored entry with the given name, or {@code null} if the entry
+   * is compressed or could not be located in the mapped file.
+   */
+  public ByteBuffer getStoredEntry(String name) {
+    Integer header = this.storedEntries.get(name);
+    if (header == null) {
+      return null;
+    }
+
+    int size = this.buffer.getInt(header + 18);
+    int start = (int)getDataStart(this.buffer, header);
+
+    ByteBuffer entry = this.buffer.duplicate();
+    entry.limit(start + size).position(start);
+    return entry.slice();
+  }
+
+  private static long getDataStart(ByteBuffer buffer, int header) {
+    return (long)header + LOCAL_HEADER_SIZE + (buffer.getShort(header + 26) & 0xFFFF) + (buffer.getShort(header + 28) & 0xFFFF);
+  }
+
+  private static Map<String, Integer> indexStoredEntries(ByteBuffer buffer) {
+    int end = findEndHeader(buffer);
+    if (end < 0) {
+      return Collections.emptyMap();
+    }
+
+    int count = buffer.getShort(end + 10) & 0xFFFF;
+    long directory = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+    if (count == 0xFFFF || directory >= end) {
+      return Collections.emptyMap(); // ZIP64 or prefixed archive
+    }
+
+    Map<String, Integer> entries = new HashMap<>();
+    int pos = (int)directory;
+    for (int i = 0; i < count; i++) {
+      if (pos + CENTRAL_HEADER_SIZE > end || buffer.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+        return Collections.emptyMap();
+      }
+
+      int method = buffer.getShort(pos + 10) & 0xFFFF;
+      int compressedSize = buffer.getInt(pos + 20);
+      int size = buffer.getInt(pos + 24);
+      int nameLength = buffer.getShort(pos + 28) & 0xFFFF;
+      int extraLength = buffer.getShort(pos + 30) & 0xFFFF;
+      int commentLength = buffer.getShort(pos + 32) & 0xFFFF;
+      long header = buffer.getInt(pos + 42) & 0xFFFFFFFFL;
+
+      if (pos + CENTRAL_HEADER_SIZE + nameLength > end) {
+        return Collections.emptyMap();
+      }
+
+      // the sizes in the local header are not set if the entry was written with a data descriptor
+      if (method == 0 && compressedSize == size && size >= 0 && header + LOCAL_HEADER_SIZE <= directory &&
+          buffer.getInt((int)header) == LOCAL_HEADER_SIGNATURE && buffer.getInt((int)header + 18) == size &&
+          getDataStart(buffer, (int)header) + size <= directory) {
+        byte[] name = new byte[nameLength];
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(pos + CENTRAL_HEADER_SIZE);
+        dup.get(name);
+        entries.put(new String(name, StandardCharsets.UTF_8), (int)header);
+      }
+
+      pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+
+    return entries;
+  }
+
+  private static int findEndHeader(ByteBuffer buffer) {
+    int min = Math.max(0, buffer.limit() - END_HEADER_SIZE - 0xFFFF);
+    for (int pos = buffer.limit() - END_HEADER_SIZE; pos >= min; pos--) {
+      if (buffer.getInt(pos) == END_HEADER_SIGNATURE) {
+        return pos;
+      }
+    }
+    return -1;
+  }
+
+}
@@ -0,0 +1,30 @@
+package org.jetbrains.java.decompiler.struct.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class MappedZipStructEntry extends ZipStructEntry {
+
+  private volatile MappedZipFile mapped;
+
+  public MappedZipStructEntry(ZipFile zip, ZipEntry entry, MappedZipFile mapped) {
+    super(zip, entry);
+    this.mapped = mapped;
+  }
+
+  @Override
+  public ByteBuffer readBuffer() throws IOException {
+    MappedZipFile mapped = this.mapped;
+    ByteBuffer buffer = mapped != null ? mapped.getStoredEntry(this.entry.getName()) : null;
+    return buffer != null ? buffer : super.readBuffer();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.mapped = null;
+    super.close();
+  }
+
+}
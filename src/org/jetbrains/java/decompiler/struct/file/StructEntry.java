@@ -3,6 +3,7 @@ package org.jetbrains.java.decompiler.struct.file;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public interface StructEntry extends Closeable {
 
@@ -10,4 +11,12 @@ public interface StructEntry extends Closeable {
 
   byte[] read() throws IOException;
 
+  /**
+   * Returns the contents of the entry between the position and the limit of the returned buffer.
+   * The buffer may be backed by a memory-mapped file and must not be modified.
+   */
+  default ByteBuffer readBuffer() throws IOException {
+    return ByteBuffer.wrap(read());
+  }
+
 }
@@ -10,8 +10,8 @@ import java.util.zip.ZipFile;
 
 public class ZipStructEntry implements StructEntry {
 
-  private final ZipFile zip;
-  private final ZipEntry entry;
+  protected final ZipFile zip;
+  protected final ZipEntry entry;
 
   public ZipStructEntry(ZipFile zip, ZipEntry entry) {
     this.zip = zip;
@@ -15,14 +15,47 @@
  */
 package org.jetbrains.java.decompiler.util;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public class DataInputFullStream extends DataInputStream {
 
+  private final ByteBuffer buffer;
+  private final int start;
+
   public DataInputFullStream(byte[] bytes) {
-    super(new ByteArrayInputStream(bytes));
+    this(ByteBuffer.wrap(bytes), null);
+  }
+
+  public DataInputFullStream(byte[] bytes, int offset, int length) {
+    this(ByteBuffer.wrap(bytes, offset, length), null);
+  }
+
+  /**
+   * Reads the remaining bytes of the buffer without copying them, which allows to parse
+   * direct and memory-mapped buffers in place. The position of the passed buffer is not changed.
+   */
+  public DataInputFullStream(ByteBuffer buffer) {
+    this(buffer.duplicate(), null);
+  }
+
+  public DataInputFullStream(ByteBuffer buffer, int offset, int length) {
+    this((ByteBuffer)buffer.duplicate().limit(offset + length).position(offset), null);
+  }
+
+  private DataInputFullStream(ByteBuffer buffer, Void owned) {
+    super(new ByteBufferInputStream(buffer));
+    this.buffer = buffer;
+    this.start = buffer.position();
+  }
+
+  /**
+   * Returns the number of bytes read or skipped so far.
+   */
+  public int getOffset() {
+    return buffer.position() - start;
   }
 
   public int readFull(byte[] b) throws IOException {
@@ -52,4 +85,42 @@ public class DataInputFullStream extends DataInputStream {
       throw new IOException("Skip failed");
     }
   }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      int n = Math.min(len, buffer.remaining());
+      if (n == 0) {
+        return -1;
+      }
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      int k = (int)Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + k);
+      return k;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
 }
@@ -15,172 +15,96 @@
  */
 package org.jetbrains.java.decompiler.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public class FastSparseSetFactory<E> {
 
-  private final VBStyleCollection<int[], E> colValuesInternal = new VBStyleCollection<int[], E>();
+  // element -> bit index, in the order the elements were first seen
+  private final Map<E, Integer> indices = new HashMap<E, Integer>();
 
-  private int lastBlock;
-
-  private int lastMask;
+  private final List<E> elements = new ArrayList<E>();
 
   public FastSparseSetFactory(Collection<E> set) {
-
-    int block = -1;
-    int mask = -1;
-    int index = 0;
-
     for (E element : set) {
-
-      block = index / 32;
-
-      if (index % 32 == 0) {
-        mask = 1;
-      }
-      else {
-        mask <<= 1;
-      }
-
-      colValuesInternal.putWithKey(new int[]{block, mask}, element);
-
-      index++;
+      addElement(element);
     }
-
-    lastBlock = block;
-    lastMask = mask;
   }
 
-  private int[] addElement(E element) {
-
-    if (lastMask == -1 || lastMask == 0x80000000) {
-      lastMask = 1;
-      lastBlock++;
-    }
-    else {
-      lastMask <<= 1;
-    }
-
-    int[] pointer = new int[]{lastBlock, lastMask};
-    colValuesInternal.putWithKey(pointer, element);
+  private int addElement(E element) {
+    int index = elements.size();
+    elements.add(element);
+    indices.put(element, index);
+    return index;
+  }
 
-    return pointer;
+  private int getIndex(E element) {
+    Integer index = indices.get(element);
+    return index != null ? index : addElement(element);
   }
 
   public FastSparseSet<E> spawnEmptySet() {
     return new FastSparseSet<E>(this);
   }
 
-  public int getLastBlock() {
-    return lastBlock;
-  }
-
-  public int getLastMask() {
-    return lastMask;
+  public int size() {
+    return elements.size();
   }
 
-  private VBStyleCollection<int[], E> getInternalValuesCollection() {
-    return colValuesInternal;
-  }
-
-
   public static class FastSparseSet<E> implements Iterable<E> {
     public static final FastSparseSet[] EMPTY_ARRAY = new FastSparseSet[0];
 
     private final FastSparseSetFactory<E> factory;
 
-    private final VBStyleCollection<int[], E> colValuesInternal;
-
-    private int[] data;
-    private int[] next;
+    private long[] data;
 
     private FastSparseSet(FastSparseSetFactory<E> factory) {
       this.factory = factory;
-      this.colValuesInternal = factory.getInternalValuesCollection();
-
-      int length = factory.getLastBlock() + 1;
-      this.data = new int[length];
-      this.next = new int[length];
+      this.data = new long[(factory.size() + 63) >>> 6];
     }
 
-    private FastSparseSet(FastSparseSetFactory<E> factory, int[] data, int[] next) {
+    private FastSparseSet(FastSparseSetFactory<E> factory, long[] data) {
       this.factory = factory;
-      this.colValuesInternal = factory.getInternalValuesCollection();
-
       this.data = data;
-      this.next = next;
     }
 
     public FastSparseSet<E> getCopy() {
-
-      int arrlength = data.length;
-      int[] cpdata = new int[arrlength];
-      int[] cpnext = new int[arrlength];
-
-      System.arraycopy(data, 0, cpdata, 0, arrlength);
-      System.arraycopy(next, 0, cpnext, 0, arrlength);
-
-      return new FastSparseSet<E>(factory, cpdata, cpnext);
+      return new FastSparseSet<E>(factory, data.clone());
     }
 
-    private int[] ensureCapacity(int index) {
-
-      int newlength = data.length;
-      if (newlength == 0) {
-        newlength = 1;
+    private long[] ensureCapacity(int length) {
+      if (length > data.length) {
+        data = Arrays.copyOf(data, Math.max(length, data.length * 2));
       }
-
-      while (newlength <= index) {
-        newlength *= 2;
-      }
-
-      int[] newdata = new int[newlength];
-      System.arraycopy(data, 0, newdata, 0, data.length);
-      data = newdata;
-
-      int[] newnext = new int[newlength];
-      System.arraycopy(next, 0, newnext, 0, next.length);
-      next = newnext;
-
-      return newdata;
+      return data;
     }
 
     public void add(E element) {
-      int[] index = colValuesInternal.getWithKey(element);
-
-      if (index == null) {
-        index = factory.addElement(element);
-      }
-
-      int block = index[0];
-      if (block >= data.length) {
-        ensureCapacity(block);
-      }
-
-      data[block] |= index[1];
-
-      changeNext(next, block, next[block], block);
+      int index = factory.getIndex(element);
+      ensureCapacity((index >>> 6) + 1)[index >>> 6] |= 1L << index;
     }
 
     public void setAllElements() {
-
-      int lastblock = factory.getLastBlock();
-      int lastmask = factory.getLastMask();
-
-      if (lastblock >= data.length) {
-        ensureCapacity(lastblock);
+      int size = factory.size();
+      if (size == 0) {
+        return;
       }
 
-      for (int i = lastblock - 1; i >= 0; i--) {
-        data[i] = 0xFFFFFFFF;
-        next[i] = i + 1;
-      }
+      long[] intdata = ensureCapacity((size + 63) >>> 6);
 
-      data[lastblock] = lastmask | (lastmask - 1);
-      next[lastblock] = 0;
+      int last = (size - 1) >>> 6;
+      Arrays.fill(intdata, 0, last, -1L);
+      intdata[last] |= -1L >>> (63 - ((size - 1) & 63));
     }
 
     public void addAll(Set<E> set) {
@@ -190,19 +114,9 @@ public class FastSparseSetFactory<E> {
     }
 
     public void remove(E element) {
-      int[] index = colValuesInternal.getWithKey(element);
-
-      if (index == null) {
-        index = factory.addElement(element);
-      }
-
-      int block = index[0];
-      if (block < data.length) {
-        data[block] &= ~index[1];
-
-        if (data[block] == 0) {
-          changeNext(next, block, block, next[block]);
-        }
+      int index = factory.getIndex(element);
+      if ((index >>> 6) < data.length) {
+        data[index >>> 6] &= ~(1L << index);
       }
     }
 
@@ -213,18 +127,13 @@ public class FastSparseSetFactory<E> {
     }
 
     public boolean contains(E element) {
-      int[] index = colValuesInternal.getWithKey(element);
-
-      if (index == null) {
-        index = factory.addElement(element);
-      }
-
-      return index[0] < data.length && ((data[index[0]] & index[1]) != 0);
+      int index = factory.getIndex(element);
+      return (index >>> 6) < data.length && (data[index >>> 6] & (1L << index)) != 0;
     }
 
     public boolean contains(FastSparseSet<E> set) {
-      int[] extdata = set.getData();
-      int[] intdata = data;
+      long[] extdata = set.data;
+      long[] intdata = data;
 
       int minlength = Math.min(extdata.length, intdata.length);
 
@@ -243,56 +152,28 @@ public class FastSparseSetFactory<E> {
       return true;
     }
 
-    private void setNext() {
-
-      int link = 0;
-      for (int i = data.length - 1; i >= 0; i--) {
-        next[i] = link;
-        if (data[i] != 0) {
-          link = i;
-        }
-      }
-    }
-
-    private static void changeNext(int[] arrnext, int key, int oldnext, int newnext) {
-      for (int i = key - 1; i >= 0; i--) {
-        if (arrnext[i] == oldnext) {
-          arrnext[i] = newnext;
-        }
-        else {
-          break;
-        }
+    // length of the words without the trailing empty ones
+    private static int getUsedLength(long[] words) {
+      int length = words.length;
+      while (length > 0 && words[length - 1] == 0) {
+        length--;
       }
+      return length;
     }
 
     public void union(FastSparseSet<E> set) {
+      long[] extdata = set.data;
+      int extlength = extdata.length > data.length ? getUsedLength(extdata) : extdata.length;
+      long[] intdata = ensureCapacity(extlength);
 
-      int[] extdata = set.getData();
-      int[] extnext = set.getNext();
-      int[] intdata = data;
-      int intlength = intdata.length;
-
-      int pointer = 0;
-      do {
-        if (pointer >= intlength) {
-          intdata = ensureCapacity(extdata.length - 1);
-        }
-
-        boolean nextrec = (intdata[pointer] == 0);
-        intdata[pointer] |= extdata[pointer];
-
-        if (nextrec) {
-          changeNext(next, pointer, next[pointer], pointer);
-        }
-
-        pointer = extnext[pointer];
+      for (int i = extlength - 1; i >= 0; i--) {
+        intdata[i] |= extdata[i];
       }
-      while (pointer != 0);
     }
 
     public void intersection(FastSparseSet<E> set) {
-      int[] extdata = set.getData();
-      int[] intdata = data;
+      long[] extdata = set.data;
+      long[] intdata = data;
 
       int minlength = Math.min(extdata.length, intdata.length);
 
@@ -303,62 +184,33 @@ public class FastSparseSetFactory<E> {
       for (int i = intdata.length - 1; i >= minlength; i--) {
         intdata[i] = 0;
       }
-
-      setNext();
     }
 
     public void symdiff(FastSparseSet<E> set) {
-      int[] extdata = set.getData();
-      int[] intdata = data;
-
-      int minlength = Math.min(extdata.length, intdata.length);
+      long[] extdata = set.data;
+      int extlength = extdata.length > data.length ? getUsedLength(extdata) : extdata.length;
+      long[] intdata = ensureCapacity(extlength);
 
-      for (int i = minlength - 1; i >= 0; i--) {
+      for (int i = extlength - 1; i >= 0; i--) {
         intdata[i] ^= extdata[i];
       }
-
-      boolean expanded = false;
-      for (int i = extdata.length - 1; i >= minlength; i--) {
-        if (extdata[i] != 0) {
-          if (!expanded) {
-            intdata = ensureCapacity(extdata.length - 1);
-          }
-          intdata[i] = extdata[i];
-        }
-      }
-
-      setNext();
     }
 
     public void complement(FastSparseSet<E> set) {
+      long[] extdata = set.data;
+      long[] intdata = data;
 
-      int[] extdata = set.getData();
-      int[] intdata = data;
-      int extlength = extdata.length;
-
-      int pointer = 0;
-      do {
-        if (pointer >= extlength) {
-          break;
-        }
-
-        intdata[pointer] &= ~extdata[pointer];
-        if (intdata[pointer] == 0) {
-          changeNext(next, pointer, pointer, next[pointer]);
-        }
-
-        pointer = next[pointer];
+      for (int i = Math.min(extdata.length, intdata.length) - 1; i >= 0; i--) {
+        intdata[i] &= ~extdata[i];
       }
-      while (pointer != 0);
     }
 
-
     public boolean equals(Object o) {
       if (o == this) return true;
       if (o == null || !(o instanceof FastSparseSet)) return false;
 
-      int[] longdata = ((FastSparseSet)o).getData();
-      int[] shortdata = data;
+      long[] longdata = ((FastSparseSet)o).data;
+      long[] shortdata = data;
 
       if (data.length > longdata.length) {
         shortdata = longdata;
@@ -380,57 +232,66 @@ public class FastSparseSetFactory<E> {
       return true;
     }
 
+    /**
+     * Returns 0 or 1 for empty and singleton sets, and 2 for all larger sets.
+     */
     public int getCardinality() {
+      int count = 0;
 
-      boolean found = false;
-      int[] intdata = data;
-
-      for (int i = intdata.length - 1; i >= 0; i--) {
-        int block = intdata[i];
-        if (block != 0) {
-          if (found) {
+      for (long word : data) {
+        if (word != 0) {
+          count += Long.bitCount(word);
+          if (count > 1) {
             return 2;
           }
-          else {
-            if ((block & (block - 1)) == 0) {
-              found = true;
-            }
-            else {
-              return 2;
-            }
-          }
         }
       }
 
-      return found ? 1 : 0;
+      return count;
     }
 
     public boolean isEmpty() {
-      return data.length == 0 || (next[0] == 0 && data[0] == 0);
+      for (long word : data) {
+        if (word != 0) {
+          return false;
+        }
+      }
+      return true;
     }
 
     public Iterator<E> iterator() {
       return new FastSparseSetIterator<E>(this);
     }
 
-    public Set<E> toPlainSet() {
-      HashSet<E> set = new HashSet<E>();
-
-      int[] intdata = data;
+    @Override
+    public void forEach(Consumer<? super E> action) {
+      List<E> elements = factory.elements;
+      long[] intdata = data;
 
-      int size = data.length * 32;
-      if (size > colValuesInternal.size()) {
-        size = colValuesInternal.size();
+      for (int i = 0; i < intdata.length; i++) {
+        for (long word = intdata[i]; word != 0; word &= word - 1) {
+          action.accept(elements.get((i << 6) + Long.numberOfTrailingZeros(word)));
+        }
       }
+    }
 
-      for (int i = size - 1; i >= 0; i--) {
-        int[] index = colValuesInternal.get(i);
+    /**
+     * Visits the elements of a set of integers in the order of the factory, without an iterator.
+     */
+    public void forEachInt(IntConsumer action) {
+      List<E> elements = factory.elements;
+      long[] intdata = data;
 
-        if ((intdata[index[0]] & index[1]) != 0) {
-          set.add(colValuesInternal.getKey(i));
+      for (int i = 0; i < intdata.length; i++) {
+        for (long word = intdata[i]; word != 0; word &= word - 1) {
+          action.accept((Integer)elements.get((i << 6) + Long.numberOfTrailingZeros(word)));
         }
       }
+    }
 
+    public Set<E> toPlainSet() {
+      HashSet<E> set = new HashSet<E>();
+      forEach(set::add);
       return set;
     }
 
@@ -441,25 +302,17 @@ public class FastSparseSetFactory<E> {
     public String toBinary() {
 
       StringBuilder buffer = new StringBuilder();
-      int[] intdata = data;
+      long[] intdata = data;
 
       for (int i = 0; i < intdata.length; i++) {
-        buffer.append(" ").append(Integer.toBinaryString(intdata[i]));
+        buffer.append(" ").append(Long.toBinaryString(intdata[i]));
       }
 
       return buffer.toString();
     }
 
-    private int[] getData() {
-      return data;
-    }
-
-    private int[] getNext() {
-      return next;
-    }
-
     public int[] getLoad() {
-      int[] intdata = data;
+      long[] intdata = data;
       int notempty = 0;
 
       for (int i = 0; i < intdata.length; i++) {
@@ -478,76 +331,51 @@ public class FastSparseSetFactory<E> {
 
   public static class FastSparseSetIterator<E> implements Iterator<E> {
 
-    private final VBStyleCollection<int[], E> colValuesInternal;
-    private final int[] data;
-    private final int[] next;
-    private final int size;
+    private final List<E> elements;
+    private final long[] data;
 
     private int pointer = -1;
-    private int next_pointer = -1;
+    private int next_pointer;
 
     private FastSparseSetIterator(FastSparseSet<E> set) {
-      colValuesInternal = set.getFactory().getInternalValuesCollection();
-      data = set.getData();
-      next = set.getNext();
-      size = colValuesInternal.size();
+      elements = set.getFactory().elements;
+      data = set.data;
+      next_pointer = getNextIndex(0);
     }
 
     private int getNextIndex(int index) {
+      int windex = index >>> 6;
+      if (windex >= data.length) {
+        return -1;
+      }
 
-      index++;
-      int bindex = index >>> 5;
-      int dindex = index & 0x1F;
-
-      while (bindex < data.length) {
-        int block = data[bindex];
-
-        if (block != 0) {
-          block >>>= dindex;
-          while (dindex < 32) {
-            if ((block & 1) != 0) {
-              return (bindex << 5) + dindex;
-            }
-            block >>>= 1;
-            dindex++;
-          }
-        }
-
-        dindex = 0;
-        bindex = next[bindex];
-
-        if (bindex == 0) {
-          break;
+      long word = data[windex] & (-1L << index);
+      while (word == 0) {
+        if (++windex >= data.length) {
+          return -1;
         }
+        word = data[windex];
       }
 
-      return -1;
+      return (windex << 6) + Long.numberOfTrailingZeros(word);
     }
 
     public boolean hasNext() {
-      next_pointer = getNextIndex(pointer);
-      return (next_pointer >= 0);
+      return next_pointer >= 0;
     }
 
     public E next() {
-      if (next_pointer >= 0) {
-        pointer = next_pointer;
-      }
-      else {
-        pointer = getNextIndex(pointer);
-        if (pointer == -1) {
-          pointer = size;
-        }
+      if (next_pointer < 0) {
+        throw new NoSuchElementException();
       }
 
-      next_pointer = -1;
-      return pointer < size ? colValuesInternal.getKey(pointer) : null;
+      pointer = next_pointer;
+      next_pointer = getNextIndex(pointer + 1);
+      return elements.get(pointer);
     }
 
     public void remove() {
-      int[] index = colValuesInternal.get(pointer);
-      data[index[0]] &= ~index[1];
+      data[pointer >>> 6] &= ~(1L << pointer);
     }
   }
 }
-
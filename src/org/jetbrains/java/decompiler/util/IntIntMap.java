@@ -0,0 +1,107 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from {@code int} keys to {@code int} values, without boxing or entry objects.
+ */
+public class IntIntMap {
+
+  private int[] keys;
+  private int[] values;
+  private boolean[] used;
+  private int size;
+
+  public IntIntMap() {
+    this(8);
+  }
+
+  public IntIntMap(int expectedSize) {
+    int capacity = 8;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    keys = new int[capacity];
+    values = new int[capacity];
+    used = new boolean[capacity];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(int key) {
+    return used[find(key)];
+  }
+
+  public int get(int key, int defaultValue) {
+    int slot = find(key);
+    return used[slot] ? values[slot] : defaultValue;
+  }
+
+  public void put(int key, int value) {
+    int slot = find(key);
+    if (!used[slot]) {
+      if ((size + 1) * 2 > keys.length) {
+        rehash(keys.length * 2);
+        slot = find(key);
+      }
+      used[slot] = true;
+      keys[slot] = key;
+      size++;
+    }
+    values[slot] = value;
+  }
+
+  public void clear() {
+    Arrays.fill(used, false);
+    size = 0;
+  }
+
+  private int find(int key) {
+    int mask = keys.length - 1;
+    int slot = LongIntMap.hash(key) & mask;
+    while (used[slot] && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    boolean[] oldUsed = used;
+
+    keys = new int[capacity];
+    values = new int[capacity];
+    used = new boolean[capacity];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        int slot = find(oldKeys[i]);
+        used[slot] = true;
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
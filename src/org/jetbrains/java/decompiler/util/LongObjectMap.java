@@ -0,0 +1,112 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from {@code long} keys to non-null values, without boxing or entry objects.
+ * Used with keys packed by {@link org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionPair#toLong}.
+ */
+public class LongObjectMap<V> {
+
+  private long[] keys;
+  private Object[] values; // null marks a free slot
+  private int size;
+
+  public LongObjectMap() {
+    this(8);
+  }
+
+  public LongObjectMap(int expectedSize) {
+    int capacity = 8;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    keys = new long[capacity];
+    values = new Object[capacity];
+  }
+
+  public LongObjectMap(LongObjectMap<V> map) {
+    keys = map.keys.clone();
+    values = map.values.clone();
+    size = map.size;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(long key) {
+    return values[find(key)] != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    return (V)values[find(key)];
+  }
+
+  public void put(long key, V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("null value");
+    }
+
+    int slot = find(key);
+    if (values[slot] == null) {
+      if ((size + 1) * 2 > keys.length) {
+        rehash(keys.length * 2);
+        slot = find(key);
+      }
+      keys[slot] = key;
+      size++;
+    }
+    values[slot] = value;
+  }
+
+  public void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  private int find(long key) {
+    int mask = keys.length - 1;
+    int slot = LongIntMap.hash(key) & mask;
+    while (values[slot] != null && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+
+    keys = new long[capacity];
+    values = new Object[capacity];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = find(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
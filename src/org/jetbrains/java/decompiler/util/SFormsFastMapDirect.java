@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.ObjIntConsumer;
 
 public class SFormsFastMapDirect {
 
@@ -328,6 +329,46 @@ public class SFormsFastMapDirect {
     }
   }
 
+  /**
+   * Compares the sets of both maps without creating entries.
+   */
+  public boolean equalsMap(SFormsFastMapDirect map) {
+    if (size != map.size) {
+      return false;
+    }
+
+    for (int i = 2; i >= 0; i--) {
+      FastSparseSet<Integer>[] arr = elements[i];
+      FastSparseSet<Integer>[] arrExtern = map.elements[i];
+      int length = Math.max(arr.length, arrExtern.length);
+
+      for (int j = 0; j < length; j++) {
+        FastSparseSet<Integer> set = j < arr.length ? arr[j] : null;
+        FastSparseSet<Integer> setExtern = j < arrExtern.length ? arrExtern[j] : null;
+        if (set != setExtern && (set == null || !set.equals(setExtern))) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Visits the sets of the map with their variable keys, without boxing the keys.
+   */
+  public void forEach(ObjIntConsumer<FastSparseSet<Integer>> action) {
+    for (int i = 2; i >= 0; i--) {
+      FastSparseSet<Integer>[] arr = elements[i];
+      for (int ikey = 0; ikey < arr.length; ikey++) {
+        FastSparseSet<Integer> ent = arr[ikey];
+        if (ent != null) {
+          action.accept(ent, i == 0 ? ikey : (i == 1 ? ikey + VarExprent.STACK_BASE : -ikey));
+        }
+      }
+    }
+  }
+
   public String toString() {
 
     StringBuilder buffer = new StringBuilder("{");
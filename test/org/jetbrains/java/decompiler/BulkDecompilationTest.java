@@ -0,0 +1,97 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.decompiler.BatchDecompiler;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BulkDecompilationTest {
+  @Rule public TemporaryFolder tempDir = new TemporaryFolder();
+
+  @Test
+  public void testDirectory() throws Exception {
+    Path destination = tempDir.newFolder("bulk").toPath();
+    decompile(destination);
+
+    assertEquals(listFiles(getReferenceDir()), listFiles(destination));
+    String main = new String(Files.readAllBytes(destination.resolve("pkg/Main.java")), StandardCharsets.UTF_8);
+    assertTrue(main, main.contains("public class Main"));
+  }
+
+  @Test
+  public void testArchive() throws Exception {
+    Path destination = new File(tempDir.getRoot(), "bulk.jar").toPath();
+    decompile(destination);
+
+    Set<String> entries = new TreeSet<String>();
+    try (ZipFile zip = new ZipFile(destination.toFile())) {
+      Enumeration<? extends ZipEntry> e = zip.entries();
+      while (e.hasMoreElements()) {
+        entries.add(e.nextElement().getName());
+      }
+    }
+    assertEquals(listFiles(getReferenceDir()), entries);
+  }
+
+  private static void decompile(Path destination) throws Exception {
+    File jar = new File(getTestDataDir(), "bulk.jar");
+    try (BatchDecompiler decompiler = new BatchDecompiler(
+      Collections.<String, Object>singletonMap(IFernflowerPreferences.LOG_LEVEL, "warn"), new PrintStreamLogger(System.err))) {
+      decompiler.addSource(jar.toPath());
+      decompiler.decompile(destination);
+    }
+  }
+
+  private static Path getReferenceDir() throws IOException {
+    return new File(getTestDataDir(), "bulk").toPath();
+  }
+
+  private static File getTestDataDir() throws IOException {
+    DecompilerTestFixture fixture = new DecompilerTestFixture();
+    fixture.setUp();
+    fixture.tearDown();
+    return fixture.getTestDataDir();
+  }
+
+  private static Set<String> listFiles(Path dir) throws IOException {
+    try (Stream<Path> stream = Files.walk(dir)) {
+      return stream.filter(Files::isRegularFile)
+        .map(file -> dir.relativize(file).toString().replace(File.separatorChar, '/'))
+        .collect(Collectors.toCollection(TreeSet::new));
+    }
+  }
+}
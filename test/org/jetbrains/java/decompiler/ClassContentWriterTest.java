@@ -0,0 +1,95 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClassContentWriterTest {
+  @Test
+  public void testWriterMatchesString() throws IOException {
+    doTest(Collections.<String, Object>emptyMap());
+  }
+
+  @Test
+  public void testWriterMatchesStringWithSourceMapping() throws IOException {
+    doTest(Collections.<String, Object>singletonMap(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING, "1"));
+  }
+
+  @Test
+  public void testWriterMatchesStringWithDebugLineNumbers() throws IOException {
+    doTest(Collections.<String, Object>singletonMap(IFernflowerPreferences.USE_DEBUG_LINE_NUMBERS, "1"));
+  }
+
+  @Test
+  public void testRepeatedDecompilationMatchesFirst() throws IOException {
+    Map<String, String> expected = ParallelDecompilationTest.decompileSequential(Collections.<String, Object>emptyMap());
+    assertFalse(expected.isEmpty());
+
+    Map<String, String> actual = new TreeMap<String, String>();
+    DecompilerTestFixture fixture = ParallelDecompilationTest.setUp(Collections.<String, Object>emptyMap());
+    try {
+      Fernflower decompiler = fixture.getDecompiler();
+      for (StructClass cl : fixture.getContext().getClasses().values()) {
+        decompiler.getClassContent(cl);
+        String content = decompiler.getClassContent(cl);
+        if (content != null && !content.isEmpty()) {
+          actual.put(cl.qualifiedName, content);
+        }
+      }
+    }
+    finally {
+      fixture.tearDown();
+    }
+
+    assertEquals(expected, actual);
+  }
+
+  private static void doTest(Map<String, Object> options) throws IOException {
+    Map<String, String> expected = ParallelDecompilationTest.decompileSequential(options);
+    assertFalse(expected.isEmpty());
+
+    Map<String, String> actual = new TreeMap<String, String>();
+    DecompilerTestFixture fixture = ParallelDecompilationTest.setUp(options);
+    try {
+      Fernflower decompiler = fixture.getDecompiler();
+      for (StructClass cl : fixture.getContext().getClasses().values()) {
+        StringWriter writer = new StringWriter();
+        assertTrue(decompiler.writeClassContent(cl, writer));
+        if (writer.getBuffer().length() > 0) {
+          actual.put(cl.qualifiedName, writer.toString());
+        }
+      }
+    }
+    finally {
+      fixture.tearDown();
+    }
+
+    assertEquals(expected, actual);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.code.CodeConstants;
+import org.jetbrains.java.decompiler.struct.consts.ConstantPool;
+import org.jetbrains.java.decompiler.struct.consts.LinkConstant;
+import org.jetbrains.java.decompiler.struct.consts.PrimitiveConstant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ConstantPoolTest {
+  private DecompilerTestFixture fixture;
+
+  @Before
+  public void setUp() throws IOException {
+    fixture = new DecompilerTestFixture();
+    fixture.setUp();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fixture.tearDown();
+    fixture = null;
+  }
+
+  @Test
+  public void testConstants() throws IOException {
+    ConstantPool pool = createPool();
+    assertEquals(13, pool.size());
+
+    PrimitiveConstant cl = pool.getPrimitiveConstant(2);
+    assertEquals(CodeConstants.CONSTANT_Class, cl.type);
+    assertEquals("pkg/A", cl.getString());
+    assertEquals(1, cl.index);
+
+    assertEquals(-1, pool.getPrimitiveConstant(3).getInt());
+    assertEquals(Long.MAX_VALUE, pool.getPrimitiveConstant(4).getLong());
+    assertNull(pool.getConstant(5));
+    assertEquals(1.5f, pool.getPrimitiveConstant(6).getFloat(), 0);
+    assertEquals(-2.25, pool.getPrimitiveConstant(7).getDouble(), 0);
+    assertNull(pool.getConstant(8));
+    assertEquals("\u00e9\u0000\u20ac", pool.getPrimitiveConstant(9).getString());
+
+    LinkConstant field = pool.getLinkConstant(12);
+    assertEquals(CodeConstants.CONSTANT_Fieldref, field.type);
+    assertEquals("pkg/A", field.classname);
+    assertEquals("\u00e9\u0000\u20ac", field.elementname);
+    assertEquals("J", field.descriptor);
+    assertEquals(2, field.index1);
+    assertEquals(11, field.index2);
+    assertSame(field, pool.getConstant(12));
+  }
+
+  @Test
+  public void testStringsAreShared() throws IOException {
+    assertSame(createPool().getString(1), createPool().getString(1));
+  }
+
+  @Test(expected = UTFDataFormatException.class)
+  public void testMalformedUtf() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeShort(2);
+    out.writeByte(CodeConstants.CONSTANT_Utf8);
+    out.writeShort(2);
+    out.write(new byte[]{(byte)0xC3, 'A'}); // lead byte without continuation byte
+    new ConstantPool(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+
+  private static ConstantPool createPool() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeShort(13);
+    out.writeByte(CodeConstants.CONSTANT_Utf8);          // 1
+    out.writeUTF("pkg/A");
+    out.writeByte(CodeConstants.CONSTANT_Class);         // 2
+    out.writeShort(1);
+    out.writeByte(CodeConstants.CONSTANT_Integer);       // 3
+    out.writeInt(-1);
+    out.writeByte(CodeConstants.CONSTANT_Long);          // 4, 5
+    out.writeLong(Long.MAX_VALUE);
+    out.writeByte(CodeConstants.CONSTANT_Float);         // 6
+    out.writeFloat(1.5f);
+    out.writeByte(CodeConstants.CONSTANT_Double);        // 7, 8
+    out.writeDouble(-2.25);
+    out.writeByte(CodeConstants.CONSTANT_Utf8);          // 9
+    out.writeUTF("\u00e9\u0000\u20ac");
+    out.writeByte(CodeConstants.CONSTANT_Utf8);          // 10
+    out.writeUTF("J");
+    out.writeByte(CodeConstants.CONSTANT_NameAndType);   // 11
+    out.writeShort(9);
+    out.writeShort(10);
+    out.writeByte(CodeConstants.CONSTANT_Fieldref);      // 12
+    out.writeShort(2);
+    out.writeShort(11);
+    return new ConstantPool(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+}
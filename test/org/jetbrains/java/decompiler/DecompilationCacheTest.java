@@ -0,0 +1,126 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.DecompilationCache;
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.collectors.BytecodeSourceMapper;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DecompilationCacheTest {
+  @Rule public TemporaryFolder tempDir = new TemporaryFolder();
+
+  @Test
+  public void testCachedClassesMatchDecompiled() throws IOException {
+    Map<String, Object> options = Collections.<String, Object>singletonMap(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING, "1");
+    Path directory = tempDir.newFolder("cache").toPath();
+
+    CountingCache cache = new CountingCache(directory);
+    Map<String, String> expected = decompile(options, cache);
+    assertFalse(expected.isEmpty());
+    assertEquals(0, cache.hits.get());
+
+    cache = new CountingCache(directory);
+    assertEquals(expected, decompile(options, cache));
+    assertEquals(expected.size(), cache.hits.get());
+  }
+
+  @Test
+  public void testOptionsChangeKey() throws IOException {
+    Path directory = tempDir.newFolder("cache").toPath();
+    decompile(Collections.<String, Object>emptyMap(), new CountingCache(directory));
+
+    CountingCache cache = new CountingCache(directory);
+    Map<String, String> result = decompile(Collections.<String, Object>singletonMap(IFernflowerPreferences.BANNER, "// banner\n"), cache);
+    assertEquals(0, cache.hits.get());
+    assertFalse(result.isEmpty());
+  }
+
+  @Test
+  public void testRenamedClassesNotCached() throws IOException {
+    Map<String, Object> options = Collections.<String, Object>singletonMap(IFernflowerPreferences.RENAME_ENTITIES, "1");
+    Path directory = tempDir.newFolder("cache").toPath();
+    decompile(options, new CountingCache(directory));
+
+    CountingCache cache = new CountingCache(directory);
+    decompile(options, cache);
+    assertEquals(0, cache.hits.get());
+  }
+
+  private static Map<String, String> decompile(Map<String, Object> options, DecompilationCache cache) throws IOException {
+    Map<String, String> result = new TreeMap<String, String>();
+    DecompilerTestFixture fixture = new DecompilerTestFixture();
+    fixture.setUp(options);
+    try {
+      for (String name : new String[]{"TestClassSimpleBytecodeMapping", "TestInnerClassConstructor"}) {
+        for (File file : new File(fixture.getTestDataDir(), "classes/pkg").listFiles()) {
+          if (file.getName().startsWith(name)) {
+            fixture.getContext().scan(file.toPath(), true);
+          }
+        }
+      }
+
+      Fernflower decompiler = fixture.getDecompiler();
+      decompiler.decompileContext();
+      decompiler.setCache(cache);
+      for (StructClass cl : fixture.getContext().getClasses().values()) {
+        DecompilerContext.setBytecodeSourceMapper(null);
+        String content = decompiler.getClassContent(cl);
+        BytecodeSourceMapper mapper = DecompilerContext.getBytecodeSourceMapper();
+        if (content != null && mapper != null) {
+          result.put(cl.qualifiedName, content + mapper.getTotalOffset());
+        }
+      }
+    }
+    finally {
+      fixture.tearDown();
+    }
+    return result;
+  }
+
+  private static class CountingCache extends DecompilationCache {
+    private final AtomicInteger hits = new AtomicInteger();
+
+    public CountingCache(Path directory) {
+      super(directory, "test");
+    }
+
+    @Override
+    public Entry get(String key) throws IOException {
+      Entry entry = super.get(key);
+      if (entry != null) {
+        hits.incrementAndGet();
+      }
+      return entry;
+    }
+  }
+}
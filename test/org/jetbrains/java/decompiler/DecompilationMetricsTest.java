@@ -0,0 +1,65 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.DecompilationMetrics;
+import org.jetbrains.java.decompiler.main.DecompilationMetrics.PhaseStats;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DecompilationMetricsTest {
+
+  @Test
+  public void testPhasesAreRecorded() throws Exception {
+    DecompilationMetrics metrics = new DecompilationMetrics(true);
+
+    DecompilerTestFixture fixture = ParallelDecompilationTest.setUp(Collections.<String, Object>emptyMap());
+    try {
+      fixture.getDecompiler().setMetrics(metrics);
+      for (StructClass cl : fixture.getContext().getClasses().values()) {
+        fixture.getDecompiler().getClassContent(cl);
+      }
+    }
+    finally {
+      fixture.tearDown();
+    }
+
+    Map<String, PhaseStats> phases = metrics.getPhases();
+    PhaseStats parseGraph = phases.get("DomHelper.parseGraph");
+    assertTrue(parseGraph.getCount() > 0);
+    assertTrue(parseGraph.getNanos() > 0);
+    assertTrue(phases.get("StackVarsProcessor").getIterations() >= parseGraph.getCount());
+
+    Map<String, PhaseStats> classPhases = metrics.getClassPhases("pkg/TestClassLoop");
+    assertTrue(classPhases.get("FinallyProcessor").getCount() > 0);
+    assertTrue(classPhases.get("DomHelper.parseGraph").getCount() < parseGraph.getCount());
+
+    Map<String, PhaseStats> methodPhases = metrics.getMethodPhases("pkg/TestClassLoop", "testFinally ()V");
+    assertEquals(1, methodPhases.get("FinallyProcessor").getCount());
+
+    String json = metrics.toJson();
+    assertTrue(json.startsWith("{\"phases\":{"));
+    assertTrue(json.contains("\"pkg/TestClassLoop\":{\"phases\":{"));
+    assertTrue(json.contains("\"testFinally ()V\":{"));
+    assertTrue(json.contains("\"allocatedBytes\":"));
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.decompiler.DecompilerSession;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DecompilerSessionTest {
+  private DecompilerTestFixture fixture;
+  private DecompilerSession session;
+
+  @Before
+  public void setUp() throws IOException {
+    fixture = new DecompilerTestFixture();
+    fixture.setUp();
+
+    session = new DecompilerSession(DecompilerTestFixture.getOptions(Collections.<String, Object>emptyMap()),
+                                    new PrintStreamLogger(System.err));
+    session.addLibrary(new File(fixture.getTestDataDir(), "classes").toPath());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    session.close();
+    fixture.tearDown();
+  }
+
+  @Test
+  public void testRequestsMatchSingleUseDecompiler() throws IOException {
+    assertEquals(decompile("pkg/TestClassLoop"), decompileInRequest("pkg/TestClassLoop"));
+    assertEquals(decompile("pkg/TestClassSwitch"), decompileInRequest("pkg/TestClassSwitch"));
+    assertEquals(decompile("pkg/TestClassLoop"), decompileInRequest("pkg/TestClassLoop"));
+  }
+
+  @Test
+  public void testLibrariesAreKept() throws IOException {
+    StructClass library;
+    try (DecompilerSession.Request request = session.openRequest()) {
+      library = request.getContext().getClass("pkg/TestClassSwitch");
+      assertNotNull(library);
+      assertFalse(library.isOwn());
+    }
+
+    try (DecompilerSession.Request request = session.openRequest()) {
+      request.addSource(getClassFile("pkg/TestClassLoop").toPath());
+      assertNotNull(request.getClassContent("pkg/TestClassLoop"));
+
+      // the own class hides the library class of the same name
+      assertTrue(request.getContext().getClass("pkg/TestClassLoop").isOwn());
+      assertSame(library, request.getContext().getClass("pkg/TestClassSwitch"));
+      assertFalse(request.getContext().getClasses().containsKey("pkg/Unknown"));
+    }
+
+    try (DecompilerSession.Request request = session.openRequest()) {
+      assertFalse(request.getContext().getClass("pkg/TestClassLoop").isOwn());
+      assertSame(library, request.getContext().getClass("pkg/TestClassSwitch"));
+    }
+  }
+
+  private String decompileInRequest(String className) throws IOException {
+    try (DecompilerSession.Request request = session.openRequest()) {
+      request.addSource(getClassFile(className).toPath());
+      return request.getClassContent(className);
+    }
+  }
+
+  private String decompile(String className) throws IOException {
+    DecompilerTestFixture single = new DecompilerTestFixture();
+    single.setUp(Collections.<String, Object>emptyMap(), new FileStructContext());
+    try {
+      single.getContext().scan(getClassFile(className).toPath(), true);
+      single.getDecompiler().decompileContext();
+      return single.getDecompiler().getClassContent(single.getContext().getClass(className));
+    }
+    finally {
+      single.tearDown();
+    }
+  }
+
+  private File getClassFile(String className) {
+    return new File(fixture.getTestDataDir(), "classes/" + className + ".class");
+  }
+}
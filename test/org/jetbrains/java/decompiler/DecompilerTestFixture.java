@@ -17,6 +17,7 @@ package org.jetbrains.java.decompiler;
 
 import org.jetbrains.java.decompiler.main.Fernflower;
 import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.struct.FileStructContext;
 
@@ -39,6 +40,14 @@ public class DecompilerTestFixture {
   }
 
   public void setUp(final Map<String, Object> options) throws IOException {
+    setUp(options, new FileStructContext());
+  }
+
+  public void setUp(final Map<String, Object> options, FileStructContext context) throws IOException {
+    setUp(options, context, new PrintStreamLogger(System.err));
+  }
+
+  public void setUp(final Map<String, Object> options, FileStructContext context, IFernflowerLogger logger) throws IOException {
     testDataDir = new File("testData");
     if (!isTestDataDir(testDataDir)) testDataDir = new File("community/plugins/java-decompiler/engine/testData");
     if (!isTestDataDir(testDataDir)) testDataDir = new File("plugins/java-decompiler/engine/testData");
@@ -46,8 +55,15 @@ public class DecompilerTestFixture {
     if (!isTestDataDir(testDataDir)) testDataDir = new File("../plugins/java-decompiler/engine/testData");
     assertTrue("current dir: " + new File("").getAbsolutePath(), isTestDataDir(testDataDir));
 
-    this.context = new FileStructContext();
-    decompiler = new Fernflower(this.context, new HashMap<String, Object>() {{
+    this.context = context;
+    decompiler = new Fernflower(this.context, getOptions(options), logger);
+  }
+
+  /**
+   * Returns the options used by the tests, overridden by the given ones.
+   */
+  public static Map<String, Object> getOptions(final Map<String, Object> options) {
+    return new HashMap<String, Object>() {{
       put(IFernflowerPreferences.LOG_LEVEL, "warn");
       put(IFernflowerPreferences.DECOMPILE_GENERIC_SIGNATURES, "1");
       put(IFernflowerPreferences.REMOVE_SYNTHETIC, "1");
@@ -55,7 +71,7 @@ public class DecompilerTestFixture {
       put(IFernflowerPreferences.LITERALS_AS_IS, "1");
       put(IFernflowerPreferences.UNIT_TEST_MODE, "1");
       putAll(options);
-    }}, new PrintStreamLogger(System.err));
+    }};
   }
 
   public void tearDown() throws IOException {
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.util.FastSparseSetFactory;
+import org.jetbrains.java.decompiler.util.FastSparseSetFactory.FastSparseSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FastSparseSetTest {
+  @Test
+  public void testOperationsAcrossWords() {
+    FastSparseSetFactory<Integer> factory = new FastSparseSetFactory<Integer>(Arrays.asList(5, 3, 1));
+
+    FastSparseSet<Integer> all = factory.spawnEmptySet();
+    for (int i = 100; i < 200; i++) {
+      all.add(i); // grows the factory past one word
+    }
+    all.setAllElements();
+    assertEquals(103, all.toPlainSet().size());
+
+    FastSparseSet<Integer> set = factory.spawnEmptySet();
+    set.add(1);
+    set.add(150);
+    assertEquals(2, set.getCardinality());
+    assertTrue(all.contains(set));
+
+    FastSparseSet<Integer> copy = set.getCopy();
+    copy.remove(150);
+    assertEquals(1, copy.getCardinality());
+    assertFalse(copy.equals(set));
+
+    set.complement(copy);
+    assertEquals(Arrays.asList(150), toList(set));
+
+    set.union(copy);
+    set.add(5);
+    assertEquals(Arrays.asList(5, 1, 150), toList(set)); // factory order
+
+    set.intersection(copy);
+    assertEquals(copy, set);
+
+    set.remove(1);
+    assertTrue(set.isEmpty());
+  }
+
+  private static List<Integer> toList(FastSparseSet<Integer> set) {
+    List<Integer> list = new ArrayList<Integer>();
+    set.forEachInt(list::add);
+
+    List<Integer> iterated = new ArrayList<Integer>();
+    for (Integer element : set) {
+      iterated.add(element);
+    }
+    assertEquals(list, iterated);
+
+    return list;
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileStructContextTest {
+  @Rule public TemporaryFolder tempDir = new TemporaryFolder();
+
+  private DecompilerTestFixture fixture;
+
+  @Before
+  public void setUp() throws IOException {
+    fixture = new DecompilerTestFixture();
+    fixture.setUp();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fixture.tearDown();
+    fixture = null;
+  }
+
+  @Test
+  public void testScanDirectory() throws IOException {
+    File dir = tempDir.newFolder("classes");
+    File pkg = new File(dir, "pkg");
+    assertTrue(pkg.mkdir());
+
+    FileStructContext files = new FileStructContext();
+    for (File file : new File(fixture.getTestDataDir(), "classes/pkg").listFiles()) {
+      if (file.getName().equals("TestAmbiguousCallWithDebugInfo.class")) {
+        continue;
+      }
+      Files.copy(file.toPath(), new File(pkg, file.getName()).toPath());
+      files.scan(file.toPath(), true);
+    }
+
+    FileStructContext context = fixture.getContext();
+    context.setThreads(4);
+    context.scan(dir.toPath(), true);
+
+    assertTrue(context.getResources().contains("pkg/TestClassLambda.class"));
+    assertEquals(describe(files), describe(context));
+    files.close();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testScanDirectoryDuplicateClass() throws IOException {
+    fixture.getContext().scan(new File(fixture.getTestDataDir(), "classes/pkg").toPath(), true);
+  }
+
+  @Test
+  public void testScanZipFile() throws IOException {
+    FileStructContext context = fixture.getContext();
+    context.setThreads(4);
+    context.scan(new File(fixture.getTestDataDir(), "bulk.jar").toPath(), true);
+
+    assertEquals(2, context.getClasses().size());
+    assertTrue(context.getClasses().containsKey("pkg/Main"));
+    assertTrue(context.getClasses().containsKey("pkg/res/Loader"));
+    assertTrue(context.getResources().contains("META-INF/MANIFEST.MF"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testScanZipFileDuplicateClass() throws IOException {
+    File jar = tempDir.newFile("duplicate.jar");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (String name : new String[]{"TestAmbiguousCall.class", "TestAmbiguousCallWithDebugInfo.class"}) {
+        out.putNextEntry(new ZipEntry("pkg/" + name));
+        Files.copy(new File(fixture.getTestDataDir(), "classes/pkg/" + name).toPath(), out);
+        out.closeEntry();
+      }
+    }
+
+    fixture.getContext().scan(jar.toPath(), true);
+  }
+
+  @Test
+  public void testLazyLibraryClasses() throws IOException {
+    FileStructContext context = fixture.getContext();
+    context.scan(new File(fixture.getTestDataDir(), "bulk.jar").toPath(), false);
+
+    assertTrue(context.getClasses().isEmpty());
+    assertTrue(context.getClasses().containsKey("pkg/Main"));
+
+    StructClass cl = context.getClass("pkg/Main");
+    assertEquals("pkg/Main", cl.qualifiedName);
+    assertFalse(cl.isOwn());
+    assertSame(cl, context.getClasses().get("pkg/Main"));
+    assertNull(context.getClass("pkg/Missing"));
+  }
+
+  @Test
+  public void testReloadEntries() throws IOException {
+    File dir = tempDir.newFolder("classes");
+    File pkg = new File(dir, "pkg");
+    assertTrue(pkg.mkdir());
+    for (File file : new File(fixture.getTestDataDir(), "classes/pkg").listFiles()) {
+      if (file.getName().startsWith("TestInnerClassConstructor") || file.getName().startsWith("TestClassSimpleBytecodeMapping")) {
+        Files.copy(file.toPath(), new File(pkg, file.getName()).toPath());
+      }
+    }
+
+    FileStructContext context = fixture.getContext();
+    context.scan(dir.toPath(), true);
+    Fernflower decompiler = fixture.getDecompiler();
+    decompiler.decompileContext();
+    String content = decompiler.getClassContent(context.getClass("pkg/TestInnerClassConstructor"));
+
+    Set<String> changed = context.reloadEntries(Collections.singleton("pkg/TestInnerClassConstructor$Inner.class"));
+    assertEquals(Collections.singleton("pkg/TestInnerClassConstructor$Inner"), changed);
+
+    List<StructClass> roots = decompiler.updateClasses(changed);
+    assertEquals(1, roots.size());
+    assertEquals("pkg/TestInnerClassConstructor", roots.get(0).qualifiedName);
+    assertEquals(content, decompiler.getClassContent(roots.get(0)));
+
+    assertTrue(new File(pkg, "TestClassSimpleBytecodeMapping$InnerClass.class").delete());
+    changed = context.reloadEntries(Collections.singleton("pkg/TestClassSimpleBytecodeMapping$InnerClass.class"));
+    assertNull(context.getClass("pkg/TestClassSimpleBytecodeMapping$InnerClass"));
+
+    roots = decompiler.updateClasses(changed);
+    assertEquals(1, roots.size());
+    assertEquals("pkg/TestClassSimpleBytecodeMapping", roots.get(0).qualifiedName);
+
+    File added = new File(pkg, "TestClassSimpleBytecodeMapping$InnerClass.class");
+    Files.copy(new File(fixture.getTestDataDir(), "classes/pkg/" + added.getName()).toPath(), added.toPath());
+    changed = context.addEntry("pkg/" + added.getName(), added.toPath(), true);
+    assertEquals(Collections.singleton("pkg/TestClassSimpleBytecodeMapping$InnerClass"), changed);
+
+    roots = decompiler.updateClasses(changed);
+    assertEquals(1, roots.size());
+    assertEquals("pkg/TestClassSimpleBytecodeMapping", roots.get(0).qualifiedName);
+  }
+
+  @Test
+  public void testReloadTruncatedEntry() throws IOException {
+    File dir = tempDir.newFolder("classes");
+    File pkg = new File(dir, "pkg");
+    assertTrue(pkg.mkdir());
+    for (File file : new File(fixture.getTestDataDir(), "classes/pkg").listFiles()) {
+      if (file.getName().startsWith("TestInnerClassConstructor")) {
+        Files.copy(file.toPath(), new File(pkg, file.getName()).toPath());
+      }
+    }
+
+    FileStructContext context = fixture.getContext();
+    context.scan(dir.toPath(), true);
+    StructClass root = context.getClass("pkg/TestInnerClassConstructor");
+    StructClass inner = context.getClass("pkg/TestInnerClassConstructor$Inner");
+
+    // e.g. while the compiler is still writing it
+    try (RandomAccessFile file = new RandomAccessFile(new File(pkg, "TestInnerClassConstructor$Inner.class"), "rw")) {
+      file.setLength(32);
+    }
+
+    try {
+      context.reloadEntries(Arrays.asList("pkg/TestInnerClassConstructor.class", "pkg/TestInnerClassConstructor$Inner.class"));
+      fail();
+    }
+    catch (Exception ignored) { }
+
+    assertSame(root, context.getClass("pkg/TestInnerClassConstructor"));
+    assertSame(inner, context.getClass("pkg/TestInnerClassConstructor$Inner"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReloadUnregisteredEntry() throws IOException {
+    fixture.getContext().reloadEntries(Collections.singleton("pkg/TestClassSimpleBytecodeMapping$1.class"));
+  }
+
+  private static Map<String, String> describe(FileStructContext context) {
+    Map<String, String> result = new TreeMap<String, String>();
+    for (StructClass cl : context.getClasses().values()) {
+      result.put(cl.qualifiedName, (cl.superClass != null ? cl.superClass.getString() : null) + " " + cl.getMethods().size() + " " + cl.getFields().size());
+    }
+    assertFalse(result.isEmpty());
+    return result;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoggerEventsTest {
+
+  @Test
+  public void testClassAndMethodEvents() throws Exception {
+    RecordingLogger logger = new RecordingLogger();
+
+    DecompilerTestFixture fixture = new DecompilerTestFixture();
+    fixture.setUp(Collections.<String, Object>emptyMap(), new FileStructContext(), logger);
+    File classFile = new File(fixture.getTestDataDir(), "classes/pkg/TestClassLoop.class");
+    try {
+      fixture.getContext().scan(classFile.toPath(), true);
+      fixture.getDecompiler().decompileContext();
+
+      StructClass cl = fixture.getContext().getClass("pkg/TestClassLoop");
+      fixture.getDecompiler().getClassContent(cl);
+    }
+    finally {
+      fixture.tearDown();
+    }
+
+    assertEquals(Arrays.asList("start pkg/TestClassLoop " + classFile.length(), "finish pkg/TestClassLoop " + classFile.length() + " true"),
+                 logger.classEvents);
+
+    assertTrue(logger.methodEvents.contains("pkg/TestClassLoop.testFinally()V SUCCESS"));
+    assertTrue(logger.totalInstructions > 0);
+    assertTrue(logger.totalStatements > 0);
+  }
+
+  private static class RecordingLogger extends IFernflowerLogger {
+    private final List<String> classEvents = new ArrayList<String>();
+    private final List<String> methodEvents = new ArrayList<String>();
+    private int totalInstructions;
+    private int totalStatements;
+
+    @Override
+    public void writeMessage(String message, Severity severity) { }
+
+    @Override
+    public void writeMessage(String message, Throwable t) { }
+
+    @Override
+    public boolean acceptsEvents() {
+      return true;
+    }
+
+    @Override
+    public void classStarted(String className, long byteSize) {
+      classEvents.add("start " + className + " " + byteSize);
+    }
+
+    @Override
+    public void classFinished(String className, long byteSize, long nanos, boolean success) {
+      classEvents.add("finish " + className + " " + byteSize + " " + success);
+    }
+
+    @Override
+    public void methodFinished(String className, String methodName, String descriptor, int instructions, int statements,
+                               long nanos, MethodResult result) {
+      methodEvents.add(className + "." + methodName + descriptor + " " + result);
+      totalInstructions += instructions;
+      totalStatements += Math.max(statements, 0);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+import org.jetbrains.java.decompiler.struct.MappedFileStructContext;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.jetbrains.java.decompiler.struct.file.MappedZipFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class MappedStructContextTest {
+  @Rule public TemporaryFolder tempDir = new TemporaryFolder();
+
+  @Test
+  public void testMappedFilesMatchHeapFiles() throws IOException {
+    Map<String, String> expected = decompile(new FileStructContext(), null);
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, decompile(new MappedFileStructContext(), null));
+  }
+
+  @Test
+  public void testStoredJarEntries() throws IOException {
+    Map<String, String> expected = decompile(new FileStructContext(), null);
+    File jar = tempDir.newFile("stored.jar");
+    assertEquals(expected, decompile(new MappedFileStructContext(), jar));
+  }
+
+  @Test
+  public void testEntryOutsideOfArchiveNotMapped() throws IOException {
+    File jar = tempDir.newFile("crafted.jar");
+    DecompilerTestFixture fixture = new DecompilerTestFixture();
+    fixture.setUp();
+    File file = getClassFiles(fixture.getTestDataDir()).get(0);
+    fixture.tearDown();
+
+    writeStoredJar(jar, Collections.singletonList(file));
+    String name = "pkg/" + file.getName();
+    assertNotNull(MappedZipFile.map(jar.toPath()).getStoredEntry(name));
+
+    // the extra field of the local header runs into the central directory
+    try (RandomAccessFile out = new RandomAccessFile(jar, "rw")) {
+      out.seek(28);
+      out.write(0xFF);
+      out.write(0xFF);
+    }
+    assertNull(MappedZipFile.map(jar.toPath()).getStoredEntry(name));
+  }
+
+  private static Map<String, String> decompile(FileStructContext context, File jar) throws IOException {
+    Map<String, String> result = new TreeMap<String, String>();
+    DecompilerTestFixture fixture = new DecompilerTestFixture();
+    fixture.setUp(Collections.<String, Object>emptyMap(), context);
+    try {
+      List<File> files = getClassFiles(fixture.getTestDataDir());
+      if (jar != null) {
+        writeStoredJar(jar, files);
+        context.scan(jar.toPath(), true);
+      }
+      else {
+        for (File file : files) {
+          context.scan(file.toPath(), true);
+        }
+      }
+
+      fixture.getDecompiler().decompileContext();
+      for (StructClass cl : context.getClasses().values()) {
+        String content = fixture.getDecompiler().getClassContent(cl);
+        if (content != null && !content.isEmpty()) {
+          result.put(cl.qualifiedName, content);
+        }
+      }
+    }
+    finally {
+      fixture.tearDown();
+    }
+    return result;
+  }
+
+  private static List<File> getClassFiles(File testDataDir) {
+    List<File> result = new ArrayList<File>();
+    File[] files = new File(testDataDir, "classes/pkg").listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (name.startsWith("TestClassSimpleBytecodeMapping") || name.startsWith("TestInnerClassConstructor")) {
+          result.add(file);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void writeStoredJar(File jar, List<File> files) throws IOException {
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (File file : files) {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        ZipEntry entry = new ZipEntry("pkg/" + file.getName());
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCompressedSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+      }
+    }
+  }
+}
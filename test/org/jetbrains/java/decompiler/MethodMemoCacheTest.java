@@ -0,0 +1,65 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.MethodMemoCache;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MethodMemoCacheTest {
+
+  @Test
+  public void testMemoizedMethodsMatchDecompiled() throws Exception {
+    Map<String, String> expected = ParallelDecompilationTest.decompileSequential(Collections.<String, Object>emptyMap());
+    assertFalse(expected.isEmpty());
+
+    MethodMemoCache cache = new MethodMemoCache();
+    assertEquals(expected, decompile(cache));
+    long hits = cache.getStats().hitCount();
+
+    assertEquals(expected, decompile(cache));
+    assertTrue(cache.getStats().hitCount() > hits);
+  }
+
+  private static Map<String, String> decompile(MethodMemoCache cache) throws IOException {
+    Map<String, String> result = new TreeMap<String, String>();
+    DecompilerTestFixture fixture = ParallelDecompilationTest.setUp(Collections.<String, Object>emptyMap());
+    try {
+      Fernflower decompiler = fixture.getDecompiler();
+      decompiler.setMethodCache(cache);
+      for (StructClass cl : fixture.getContext().getClasses().values()) {
+        String content = decompiler.getClassContent(cl);
+        if (content != null && !content.isEmpty()) {
+          result.put(cl.qualifiedName, content);
+        }
+      }
+    }
+    finally {
+      fixture.tearDown();
+    }
+    return result;
+  }
+}
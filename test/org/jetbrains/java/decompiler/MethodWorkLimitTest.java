@@ -0,0 +1,57 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.struct.FileStructContext;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MethodWorkLimitTest {
+
+  @Test
+  public void testUnlimited() throws IOException {
+    String content = decompile("0");
+    assertFalse(content.contains("$FF: Couldn't be decompiled"));
+  }
+
+  @Test
+  public void testLargeMethodsAreLeftOut() throws IOException {
+    String content = decompile("10");
+    assertTrue(content.contains("while(true) {\n         System.out.println();\n      }"));
+    assertTrue(content.contains("public static void testFinally() {\n      // $FF: Couldn't be decompiled\n   }"));
+    assertTrue(content.contains("public static int testWhileCombined(String param0) {\n      // $FF: Couldn't be decompiled\n   }"));
+  }
+
+  private static String decompile(String limit) throws IOException {
+    DecompilerTestFixture fixture = new DecompilerTestFixture();
+    fixture.setUp(Collections.<String, Object>singletonMap(IFernflowerPreferences.MAX_PROCESSING_NODES, limit), new FileStructContext());
+    try {
+      fixture.getContext().scan(new File(fixture.getTestDataDir(), "classes/pkg/TestClassLoop.class").toPath(), true);
+      fixture.getDecompiler().decompileContext();
+      return fixture.getDecompiler().getClassContent(fixture.getContext().getClass("pkg/TestClassLoop"));
+    }
+    finally {
+      fixture.tearDown();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OnDemandClassesTest {
+  private static final Map<String, Object> ON_DEMAND = Collections.<String, Object>singletonMap(IFernflowerPreferences.ON_DEMAND_CLASSES, "1");
+
+  @Test
+  public void testOnDemandMatchesFullTree() throws Exception {
+    Map<String, String> expected = ParallelDecompilationTest.decompileSequential(Collections.<String, Object>emptyMap());
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, ParallelDecompilationTest.decompileSequential(ON_DEMAND));
+  }
+
+  @Test
+  public void testOnlyTreeOfClassIsBuilt() throws Exception {
+    DecompilerTestFixture fixture = ParallelDecompilationTest.setUp(ON_DEMAND);
+    try {
+      assertTrue(getLoadedClasses().isEmpty());
+
+      fixture.getDecompiler().getClassContent(fixture.getContext().getClass("pkg/TestAnonymousClass$Inner"));
+      Set<String> loaded = getLoadedClasses();
+      assertTrue(loaded.contains("pkg/TestAnonymousClass"));
+      assertTrue(loaded.contains("pkg/TestAnonymousClass$Inner$1"));
+      assertFalse(loaded.contains("pkg/TestClassLoop"));
+
+      ClassNode node = DecompilerContext.getClassProcessor().getMapRootClasses().get("pkg/TestAnonymousClass$Inner");
+      assertEquals(ClassNode.CLASS_MEMBER, node.type);
+      assertEquals("pkg/TestAnonymousClass", node.parent.classStruct.qualifiedName);
+    }
+    finally {
+      fixture.tearDown();
+    }
+  }
+
+  // copied, looking classes up in the map would load them
+  private static Set<String> getLoadedClasses() {
+    return new HashSet<String>(DecompilerContext.getClassProcessor().getMapRootClasses().keySet());
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2000-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ParallelDecompilationTest {
+
+  @Test
+  public void testParallelClassesMatchSequential() throws Exception {
+    Map<String, String> sequential = decompileSequential(Collections.<String, Object>emptyMap());
+
+    Map<String, String> parallel = new ConcurrentHashMap<String, String>();
+    DecompilerTestFixture fixture = setUp(Collections.<String, Object>singletonMap(IFernflowerPreferences.THREADS, "4"));
+    try {
+      fixture.getDecompiler().decompileClasses((cl, content) -> {
+        if (content != null && !content.isEmpty()) {
+          parallel.put(cl.qualifiedName, content);
+        }
+      });
+    }
+    finally {
+      fixture.tearDown();
+    }
+
+    assertFalse(sequential.isEmpty());
+    assertEquals(sequential, new TreeMap<String, String>(parallel));
+  }
+
+  @Test
+  public void testParallelMethodsMatchSequential() throws Exception {
+    Map<String, String> sequential = decompileSequential(Collections.<String, Object>emptyMap());
+    Map<String, String> parallel = decompileSequential(Collections.<String, Object>singletonMap(IFernflowerPreferences.PARALLEL_METHODS, "1"));
+
+    assertFalse(sequential.isEmpty());
+    assertEquals(sequential, parallel);
+  }
+
+  static Map<String, String> decompileSequential(Map<String, Object> options) throws IOException {
+    Map<String, String> result = new TreeMap<String, String>();
+    DecompilerTestFixture fixture = setUp(options);
+    try {
+      Fernflower decompiler = fixture.getDecompiler();
+      for (StructClass cl : fixture.getContext().getClasses().values()) {
+        String content = decompiler.getClassContent(cl);
+        if (content != null && !content.isEmpty()) {
+          result.put(cl.qualifiedName, content);
+        }
+      }
+    }
+    finally {
+      fixture.tearDown();
+    }
+    return result;
+  }
+
+  static DecompilerTestFixture setUp(Map<String, Object> options) throws IOException {
+    DecompilerTestFixture fixture = new DecompilerTestFixture();
+    fixture.setUp(options);
+
+    File[] files = new File(fixture.getTestDataDir(), "classes/pkg").listFiles();
+    if (files != null) {
+      for (File file : files) {
+        try {
+          fixture.getContext().scan(file.toPath(), true);
+        }
+        catch (IllegalArgumentException ignore) { } // same class compiled with different options
+      }
+    }
+
+    fixture.getDecompiler().decompileContext();
+    return fixture;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionPair;
+import org.jetbrains.java.decompiler.util.IntIntMap;
+import org.jetbrains.java.decompiler.util.LongIntMap;
+import org.jetbrains.java.decompiler.util.LongObjectMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitiveMapsTest {
+  @Test
+  public void testVarVersionPairPacking() {
+    assertNotEquals(VarVersionPair.toLong(1, -1), VarVersionPair.toLong(0, -1));
+    assertNotEquals(VarVersionPair.toLong(-1, 0), VarVersionPair.toLong(0, -1));
+    assertEquals(new VarVersionPair(5, 2).toLong(), VarVersionPair.toLong(5, 2));
+  }
+
+  @Test
+  public void testIntIntMap() {
+    IntIntMap map = new IntIntMap();
+    for (int i = -1000; i < 1000; i++) {
+      map.put(i, -i);
+    }
+    map.put(7, 1);
+
+    assertEquals(2000, map.size());
+    assertEquals(1, map.get(7, 0));
+    assertEquals(1000, map.get(-1000, 0));
+    assertEquals(42, map.get(1000, 42));
+    assertTrue(map.containsKey(0));
+    assertFalse(map.containsKey(1000));
+  }
+
+  @Test
+  public void testLongIntMap() {
+    LongIntMap map = new LongIntMap();
+    for (int var = -10; var < 10; var++) {
+      for (int version = -1; version < 50; version++) {
+        map.put(VarVersionPair.toLong(var, version), var * 100 + version);
+      }
+    }
+
+    assertEquals(20 * 51, map.size());
+    assertEquals(-501, map.get(VarVersionPair.toLong(-5, -1), 0));
+    assertEquals(949, map.get(VarVersionPair.toLong(9, 49), 0));
+    assertEquals(-1, map.get(VarVersionPair.toLong(10, 0), -1));
+  }
+
+  @Test
+  public void testLongObjectMapCopy() {
+    LongObjectMap<String> map = new LongObjectMap<String>();
+    for (int i = 0; i < 100; i++) {
+      map.put(VarVersionPair.toLong(i, 1), String.valueOf(i));
+    }
+
+    LongObjectMap<String> copy = new LongObjectMap<String>(map);
+    copy.put(VarVersionPair.toLong(100, 1), "100");
+    copy.put(VarVersionPair.toLong(0, 1), "zero");
+
+    assertEquals(100, map.size());
+    assertEquals(101, copy.size());
+    assertEquals("0", map.get(VarVersionPair.toLong(0, 1)));
+    assertEquals("zero", copy.get(VarVersionPair.toLong(0, 1)));
+    assertNull(map.get(VarVersionPair.toLong(100, 1)));
+  }
+}